@@ -0,0 +1,436 @@
+package com.zbowen.graph;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.zbowen.graph.Graph.EdgeInfo;
+import com.zbowen.graph.Graph.PathInfo;
+
+/**
+ * 多源最短路径的结果 只保存 n * n 的 权值矩阵(double / long / 其它类型的权值) 以及 第一跳矩阵(int)
+ * 第一跳 为 i -> j 路径上第一条边的编号 由具体的图定义 -1 代表不可达
+ * distance(u, v) 直接读矩阵 path(u, v) 沿着第一跳还原路径
+ * 作为 Map<V, Map<V, PathInfo<V, E>>> 使用时 行 / PathInfo 在取出时才创建 路径在 getEdgeInfos() 时才还原
+ * 和原来的 Floyd 一样 i -> i 只包含 自环 没有可达顶点的行不出现在 Map 中
+ *
+ * double / long 的矩阵 可以放在 堆上 / 堆外(DirectByteBuffer) / 内存映射的临时文件 中 见 Storage
+ * 其它类型的权值 总是放在堆上的 Object[] 中
+ * @author zbowen
+ *
+ * @param <V> 顶点的值
+ * @param <E> 边的权值
+ */
+@SuppressWarnings("unchecked")
+public abstract class AllPairsPaths<V, E> extends AbstractMap<V, Map<V, PathInfo<V, E>>> {
+
+	/**
+	 * 矩阵的存放位置
+	 */
+	public enum Storage {
+		HEAP, //double[] / long[] + int[]
+		OFF_HEAP, //DirectByteBuffer 不占用 java 堆
+		MAPPED //内存映射的临时文件 由操作系统换入换出 可以超过物理内存
+	}
+
+	//每个 ByteBuffer 最多 2G 堆外 / 内存映射时 按行分块 块内的偏移量 不会超过 int
+	private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+	//HEAP 时 矩阵的元素数量 不能超过 数组的最大长度 大约 46000 个顶点
+	private static final long MAX_HEAP_ELEMENTS = Integer.MAX_VALUE - 8;
+
+	final int size; //顶点数量
+	final boolean longWeights; //权值为 long 还是 double
+
+	//HEAP BlockedFloydWarshall 直接在数组上计算
+	double[] doubleMatrix;
+	long[] longMatrix;
+	int[] hopMatrix;
+	private Object[] boxedMatrix; //其它类型的权值 不可达为 null
+
+	//OFF_HEAP / MAPPED
+	private ByteBuffer[] weightChunks;
+	private ByteBuffer[] hopChunks;
+	private int rowsPerChunk;
+
+	private int rows = -1; //有可达顶点的行数 第一次调用 size() 时计算
+	private Set<Entry<V, Map<V, PathInfo<V, E>>>> entrySet;
+
+	/**
+	 * 其它类型的权值 使用已经计算好的 堆上的矩阵 数组由调用者创建 创建之前需要 checkHeapSize
+	 */
+	AllPairsPaths(int size, Object[] weights, int[] hops) {
+		this.size = size;
+		this.longWeights = false;
+		boxedMatrix = weights;
+		hopMatrix = hops;
+	}
+
+	/**
+	 * 创建空的矩阵 所有的 第一跳 都为 -1 由调用者逐行填充
+	 */
+	AllPairsPaths(int size, boolean longWeights, Storage storage) {
+		this.size = size;
+		this.longWeights = longWeights;
+		if (storage == Storage.HEAP) {
+			checkHeapSize(size);
+			if (longWeights) {
+				longMatrix = new long[size * size];
+			} else {
+				doubleMatrix = new double[size * size];
+			}
+			hopMatrix = new int[size * size];
+		} else {
+			allocate(storage);
+		}
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				setHop(i, j, -1);
+			}
+		}
+	}
+
+	/**
+	 * 堆上的 n * n 矩阵 元素数量不能超过 数组的最大长度
+	 */
+	static void checkHeapSize(int size) {
+		if ((long) size * size > MAX_HEAP_ELEMENTS) {
+			throw new IllegalArgumentException("顶点数量 " + size + " 太多 矩阵超过数组的最大长度 需要使用 OFF_HEAP 或 MAPPED");
+		}
+	}
+
+	/**
+	 * Floyd 的初始矩阵 权值都为 不可达(INFINITY / Long.MAX_VALUE) 对角线为 0
+	 */
+	void fillUnreachable() {
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				if (longWeights) {
+					set(i, j, i == j ? 0 : Long.MAX_VALUE, -1);
+				} else {
+					set(i, j, i == j ? 0 : Double.POSITIVE_INFINITY, -1);
+				}
+			}
+		}
+	}
+
+	private void allocate(Storage storage) {
+		rowsPerChunk = (int) Math.max(1, Math.min(size, MAX_CHUNK_BYTES / (8L * Math.max(size, 1))));
+		int chunks = size == 0 ? 0 : (size + rowsPerChunk - 1) / rowsPerChunk;
+		weightChunks = new ByteBuffer[chunks];
+		hopChunks = new ByteBuffer[chunks];
+		if (storage == Storage.OFF_HEAP) {
+			for (int c = 0; c < chunks; c++) {
+				int chunkRows = Math.min(rowsPerChunk, size - c * rowsPerChunk);
+				weightChunks[c] = ByteBuffer.allocateDirect(chunkRows * size * 8).order(ByteOrder.nativeOrder());
+				hopChunks[c] = ByteBuffer.allocateDirect(chunkRows * size * 4).order(ByteOrder.nativeOrder());
+			}
+			return;
+		}
+		try {
+			Path file = Files.createTempFile("all-pairs-paths", ".bin");
+			//映射之后 文件关闭(删除)了 映射依然有效
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+				long position = 0;
+				for (int c = 0; c < chunks; c++) {
+					long chunkRows = Math.min(rowsPerChunk, size - c * rowsPerChunk);
+					weightChunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkRows * size * 8).order(ByteOrder.nativeOrder());
+					position += chunkRows * size * 8;
+					hopChunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkRows * size * 4).order(ByteOrder.nativeOrder());
+					position += chunkRows * size * 4;
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * 顶点的 index 不存在返回 -1
+	 */
+	abstract int indexOf(Object value);
+
+	abstract V valueOf(int index);
+
+	/**
+	 * 编号为 hop 的边 指向的顶点
+	 */
+	abstract int targetOf(int hop);
+
+	abstract EdgeInfo<V, E> edgeInfo(int hop);
+
+	int hop(int i, int j) {
+		if (hopMatrix != null) return hopMatrix[i * size + j];
+		return hopChunks[i / rowsPerChunk].getInt(((i % rowsPerChunk) * size + j) << 2);
+	}
+
+	void setHop(int i, int j, int hop) {
+		if (hopMatrix != null) {
+			hopMatrix[i * size + j] = hop;
+		} else {
+			hopChunks[i / rowsPerChunk].putInt(((i % rowsPerChunk) * size + j) << 2, hop);
+		}
+	}
+
+	double doubleWeight(int i, int j) {
+		if (doubleMatrix != null) return doubleMatrix[i * size + j];
+		return weightChunks[i / rowsPerChunk].getDouble(((i % rowsPerChunk) * size + j) << 3);
+	}
+
+	long longWeight(int i, int j) {
+		if (longMatrix != null) return longMatrix[i * size + j];
+		return weightChunks[i / rowsPerChunk].getLong(((i % rowsPerChunk) * size + j) << 3);
+	}
+
+	/**
+	 * 不同的行 可以由不同的线程 同时写入
+	 */
+	void set(int i, int j, double weight, int hop) {
+		if (doubleMatrix != null) {
+			doubleMatrix[i * size + j] = weight;
+		} else {
+			weightChunks[i / rowsPerChunk].putDouble(((i % rowsPerChunk) * size + j) << 3, weight);
+		}
+		setHop(i, j, hop);
+	}
+
+	void set(int i, int j, long weight, int hop) {
+		if (longMatrix != null) {
+			longMatrix[i * size + j] = weight;
+		} else {
+			weightChunks[i / rowsPerChunk].putLong(((i % rowsPerChunk) * size + j) << 3, weight);
+		}
+		setHop(i, j, hop);
+	}
+
+	private E weight(int i, int j) {
+		if (boxedMatrix != null) return (E) boxedMatrix[i * size + j];
+		return longWeights ? (E) Long.valueOf(longWeight(i, j)) : (E) Double.valueOf(doubleWeight(i, j));
+	}
+
+	/**
+	 * from -> to 的最短路径权值 不可达返回 null
+	 */
+	public E distance(V from, V to) {
+		int i = indexOf(from);
+		int j = indexOf(to);
+		if (i < 0 || j < 0 || hop(i, j) < 0) return null;
+		return weight(i, j);
+	}
+
+	/**
+	 * from -> to 的最短路径 不可达返回 null
+	 */
+	public List<EdgeInfo<V, E>> path(V from, V to) {
+		int i = indexOf(from);
+		int j = indexOf(to);
+		if (i < 0 || j < 0 || hop(i, j) < 0) return null;
+		return edgeInfos(i, j);
+	}
+
+	/**
+	 * 沿着 第一跳 还原 i -> j 的路径
+	 */
+	List<EdgeInfo<V, E>> edgeInfos(int i, int j) {
+		List<EdgeInfo<V, E>> edgeInfos = new LinkedList<>();
+		int hop = hop(i, j);
+		edgeInfos.add(edgeInfo(hop));
+		//存在负权环时 第一跳可能成环 最多走 顶点数量 步
+		for (int from = targetOf(hop); from != j && edgeInfos.size() < size; from = targetOf(hop)) {
+			hop = hop(from, j);
+			edgeInfos.add(edgeInfo(hop));
+		}
+		return edgeInfos;
+	}
+
+	private boolean containsRow(int i) {
+		if (i < 0) return false;
+		for (int j = 0; j < size; j++) {
+			if (hop(i, j) >= 0) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public Map<V, PathInfo<V, E>> get(Object key) {
+		int i = indexOf(key);
+		return containsRow(i) ? new Row(i) : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return containsRow(indexOf(key));
+	}
+
+	@Override
+	public int size() {
+		if (rows < 0) {
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (containsRow(i)) count++;
+			}
+			rows = count;
+		}
+		return rows;
+	}
+
+	@Override
+	public Set<Entry<V, Map<V, PathInfo<V, E>>>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Entry<V, Map<V, PathInfo<V, E>>>>() {
+				@Override
+				public Iterator<Entry<V, Map<V, PathInfo<V, E>>>> iterator() {
+					return new IndexIterator<Entry<V, Map<V, PathInfo<V, E>>>>() {
+						@Override
+						boolean contains(int index) {
+							return containsRow(index);
+						}
+
+						@Override
+						Entry<V, Map<V, PathInfo<V, E>>> entry(int index) {
+							return new SimpleImmutableEntry<>(valueOf(index), new Row(index));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return AllPairsPaths.this.size();
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	/**
+	 * 依次返回 contains(index) 的 index 对应的元素
+	 */
+	private abstract class IndexIterator<T> implements Iterator<T> {
+		private int next = -1;
+
+		abstract boolean contains(int index);
+
+		abstract T entry(int index);
+
+		private int nextIndex(int index) {
+			while (index < size && !contains(index)) {
+				index++;
+			}
+			return index;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (next < 0) next = nextIndex(0);
+			return next < size;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			int index = next;
+			next = nextIndex(index + 1);
+			return entry(index);
+		}
+	}
+
+	/**
+	 * 以 i 为起点的一行
+	 */
+	private class Row extends AbstractMap<V, PathInfo<V, E>> {
+		private final int i;
+		private int size = -1;
+
+		Row(int i) {
+			this.i = i;
+		}
+
+		private boolean contains(int j) {
+			return j >= 0 && hop(i, j) >= 0;
+		}
+
+		@Override
+		public PathInfo<V, E> get(Object key) {
+			int j = indexOf(key);
+			return contains(j) ? new MatrixPathInfo(i, j) : null;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return contains(indexOf(key));
+		}
+
+		@Override
+		public int size() {
+			if (size < 0) {
+				int count = 0;
+				for (int j = 0; j < AllPairsPaths.this.size; j++) {
+					if (contains(j)) count++;
+				}
+				size = count;
+			}
+			return size;
+		}
+
+		@Override
+		public Set<Entry<V, PathInfo<V, E>>> entrySet() {
+			return new AbstractSet<Entry<V, PathInfo<V, E>>>() {
+				@Override
+				public Iterator<Entry<V, PathInfo<V, E>>> iterator() {
+					return new IndexIterator<Entry<V, PathInfo<V, E>>>() {
+						@Override
+						boolean contains(int j) {
+							return Row.this.contains(j);
+						}
+
+						@Override
+						Entry<V, PathInfo<V, E>> entry(int j) {
+							return new SimpleImmutableEntry<>(valueOf(j), new MatrixPathInfo(i, j));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return Row.this.size();
+				}
+			};
+		}
+	}
+
+	/**
+	 * 路径信息 edgeInfos 在第一次获取时才还原
+	 */
+	private class MatrixPathInfo extends PathInfo<V, E> {
+		private final int i;
+		private final int j;
+
+		MatrixPathInfo(int i, int j) {
+			super(weight(i, j), null);
+			this.i = i;
+			this.j = j;
+		}
+
+		@Override
+		public List<EdgeInfo<V, E>> getEdgeInfos() {
+			if (super.getEdgeInfos() == null) {
+				setEdgeInfos(edgeInfos(i, j));
+			}
+			return super.getEdgeInfos();
+		}
+	}
+
+}
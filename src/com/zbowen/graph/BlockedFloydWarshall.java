@@ -0,0 +1,271 @@
+package com.zbowen.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 稠密矩阵上的 分块(tile) Floyd
+ * 矩阵按 BLOCK * BLOCK 分块 每一轮 k 块分三个阶段:
+ * 1.对角块 2.与对角块同行/同列的块 3.其余的块
+ * 同一阶段的块之间互不依赖 交给 ForkJoinPool 并行计算
+ *
+ * 直接在 AllPairsPaths 的矩阵上计算 HEAP 时读写数组 OFF_HEAP / MAPPED 时读写缓冲区 不另外分配 n * n 的矩阵
+ * weight(i, j) 为 i -> j 的权值 不可达为 INFINITY(double) / Long.MAX_VALUE(long) 对角线需要为 0 见 fillUnreachable
+ * hop(i, j) 为 i -> j 路径上第一跳的编号(由调用者定义 比如 边的编号) 不可达为 -1
+ * 更新 i -> j 时 hop(i, j) = hop(i, k)
+ * @author zbowen
+ *
+ */
+final class BlockedFloydWarshall {
+
+	static final int BLOCK = 64;
+	//顶点数量小于它时 直接串行计算
+	private static final int PARALLEL_THRESHOLD = BLOCK * 2;
+
+	private BlockedFloydWarshall() {}
+
+	static void run(AllPairsPaths<?, ?> paths, ForkJoinPool pool) {
+		int n = paths.size;
+		Kernel kernel;
+		if (paths.doubleMatrix != null) {
+			kernel = new DoubleKernel(paths.doubleMatrix, paths.hopMatrix, n);
+		} else if (paths.longMatrix != null) {
+			kernel = new LongKernel(paths.longMatrix, paths.hopMatrix, n);
+		} else if (paths.longWeights) {
+			kernel = new LongBufferKernel(paths);
+		} else {
+			kernel = new DoubleBufferKernel(paths);
+		}
+		run(kernel, n, pool);
+	}
+
+	private static void run(Kernel kernel, int n, ForkJoinPool pool) {
+		int blocks = (n + BLOCK - 1) / BLOCK;
+		boolean parallel = n >= PARALLEL_THRESHOLD && pool.getParallelism() > 1;
+		for (int kb = 0; kb < blocks; kb++) {
+			//阶段1 对角块
+			kernel.tile(kb, kb, kb);
+
+			//阶段2 同行 同列的块
+			List<int[]> tiles = new ArrayList<>();
+			for (int b = 0; b < blocks; b++) {
+				if (b == kb) continue;
+				tiles.add(new int[] {kb, b});
+				tiles.add(new int[] {b, kb});
+			}
+			execute(kernel, kb, tiles, parallel, pool);
+
+			//阶段3 其余的块
+			tiles.clear();
+			for (int ib = 0; ib < blocks; ib++) {
+				if (ib == kb) continue;
+				for (int jb = 0; jb < blocks; jb++) {
+					if (jb == kb) continue;
+					tiles.add(new int[] {ib, jb});
+				}
+			}
+			execute(kernel, kb, tiles, parallel, pool);
+		}
+	}
+
+	private static void execute(Kernel kernel, int kb, List<int[]> tiles, boolean parallel, ForkJoinPool pool) {
+		if (!parallel) {
+			for (int[] tile : tiles) {
+				kernel.tile(kb, tile[0], tile[1]);
+			}
+			return;
+		}
+		pool.invoke(new TileTask(kernel, kb, tiles, 0, tiles.size()));
+	}
+
+	/**
+	 * 把一批 tile 二分 直到只剩一个
+	 */
+	private static class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Kernel kernel;
+		private final int kb;
+		private final List<int[]> tiles;
+		private final int begin;
+		private final int end;
+
+		TileTask(Kernel kernel, int kb, List<int[]> tiles, int begin, int end) {
+			this.kernel = kernel;
+			this.kb = kb;
+			this.tiles = tiles;
+			this.begin = begin;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - begin == 1) {
+				int[] tile = tiles.get(begin);
+				kernel.tile(kb, tile[0], tile[1]);
+				return;
+			}
+			int mid = (begin + end) >>> 1;
+			ForkJoinTask.invokeAll(new TileTask(kernel, kb, tiles, begin, mid),
+					new TileTask(kernel, kb, tiles, mid, end));
+		}
+	}
+
+	private interface Kernel {
+		/**
+		 * 用 kb 块中的 k 更新 (ib, jb) 块
+		 */
+		void tile(int kb, int ib, int jb);
+	}
+
+	/**
+	 * 数组的长度 不超过 Integer.MAX_VALUE 所以 i * n + j 不会溢出
+	 */
+	private static class DoubleKernel implements Kernel {
+		private final double[] weights;
+		private final int[] hops;
+		private final int n;
+
+		DoubleKernel(double[] weights, int[] hops, int n) {
+			this.weights = weights;
+			this.hops = hops;
+			this.n = n;
+		}
+
+		@Override
+		public void tile(int kb, int ib, int jb) {
+			double[] weights = this.weights;
+			int[] hops = this.hops;
+			int kEnd = Math.min(n, (kb + 1) * BLOCK);
+			int iEnd = Math.min(n, (ib + 1) * BLOCK);
+			int jBegin = jb * BLOCK;
+			int jEnd = Math.min(n, jBegin + BLOCK);
+			for (int k = kb * BLOCK; k < kEnd; k++) {
+				int kRow = k * n;
+				for (int i = ib * BLOCK; i < iEnd; i++) {
+					int iRow = i * n;
+					double weightIK = weights[iRow + k];
+					if (weightIK == Double.POSITIVE_INFINITY) continue;
+					int hopIK = hops[iRow + k];
+					for (int j = jBegin; j < jEnd; j++) {
+						double newWeight = weightIK + weights[kRow + j];
+						if (newWeight < weights[iRow + j]) {
+							weights[iRow + j] = newWeight;
+							hops[iRow + j] = hopIK;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static class LongKernel implements Kernel {
+		private final long[] weights;
+		private final int[] hops;
+		private final int n;
+
+		LongKernel(long[] weights, int[] hops, int n) {
+			this.weights = weights;
+			this.hops = hops;
+			this.n = n;
+		}
+
+		@Override
+		public void tile(int kb, int ib, int jb) {
+			long[] weights = this.weights;
+			int[] hops = this.hops;
+			int kEnd = Math.min(n, (kb + 1) * BLOCK);
+			int iEnd = Math.min(n, (ib + 1) * BLOCK);
+			int jBegin = jb * BLOCK;
+			int jEnd = Math.min(n, jBegin + BLOCK);
+			for (int k = kb * BLOCK; k < kEnd; k++) {
+				int kRow = k * n;
+				for (int i = ib * BLOCK; i < iEnd; i++) {
+					int iRow = i * n;
+					long weightIK = weights[iRow + k];
+					if (weightIK == Long.MAX_VALUE) continue;
+					int hopIK = hops[iRow + k];
+					for (int j = jBegin; j < jEnd; j++) {
+						long weightKJ = weights[kRow + j];
+						if (weightKJ == Long.MAX_VALUE) continue;
+						long newWeight = weightIK + weightKJ;
+						if (newWeight < weights[iRow + j]) {
+							weights[iRow + j] = newWeight;
+							hops[iRow + j] = hopIK;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * OFF_HEAP / MAPPED 通过 AllPairsPaths 读写缓冲区 不同的块 写入不同的位置
+	 */
+	private static class DoubleBufferKernel implements Kernel {
+		private final AllPairsPaths<?, ?> paths;
+
+		DoubleBufferKernel(AllPairsPaths<?, ?> paths) {
+			this.paths = paths;
+		}
+
+		@Override
+		public void tile(int kb, int ib, int jb) {
+			AllPairsPaths<?, ?> paths = this.paths;
+			int n = paths.size;
+			int kEnd = Math.min(n, (kb + 1) * BLOCK);
+			int iEnd = Math.min(n, (ib + 1) * BLOCK);
+			int jBegin = jb * BLOCK;
+			int jEnd = Math.min(n, jBegin + BLOCK);
+			for (int k = kb * BLOCK; k < kEnd; k++) {
+				for (int i = ib * BLOCK; i < iEnd; i++) {
+					double weightIK = paths.doubleWeight(i, k);
+					if (weightIK == Double.POSITIVE_INFINITY) continue;
+					int hopIK = paths.hop(i, k);
+					for (int j = jBegin; j < jEnd; j++) {
+						double newWeight = weightIK + paths.doubleWeight(k, j);
+						if (newWeight < paths.doubleWeight(i, j)) {
+							paths.set(i, j, newWeight, hopIK);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static class LongBufferKernel implements Kernel {
+		private final AllPairsPaths<?, ?> paths;
+
+		LongBufferKernel(AllPairsPaths<?, ?> paths) {
+			this.paths = paths;
+		}
+
+		@Override
+		public void tile(int kb, int ib, int jb) {
+			AllPairsPaths<?, ?> paths = this.paths;
+			int n = paths.size;
+			int kEnd = Math.min(n, (kb + 1) * BLOCK);
+			int iEnd = Math.min(n, (ib + 1) * BLOCK);
+			int jBegin = jb * BLOCK;
+			int jEnd = Math.min(n, jBegin + BLOCK);
+			for (int k = kb * BLOCK; k < kEnd; k++) {
+				for (int i = ib * BLOCK; i < iEnd; i++) {
+					long weightIK = paths.longWeight(i, k);
+					if (weightIK == Long.MAX_VALUE) continue;
+					int hopIK = paths.hop(i, k);
+					for (int j = jBegin; j < jEnd; j++) {
+						long weightKJ = paths.longWeight(k, j);
+						if (weightKJ == Long.MAX_VALUE) continue;
+						long newWeight = weightIK + weightKJ;
+						if (newWeight < paths.longWeight(i, j)) {
+							paths.set(i, j, newWeight, hopIK);
+						}
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,34 @@
+package com.zbowen.graph;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 定长的 线程安全 位集合 set 使用 CAS 只有一个线程能把同一位 从 0 改为 1
+ * @author zbowen
+ *
+ */
+final class ConcurrentBitSet {
+	private final AtomicLongArray words;
+
+	ConcurrentBitSet(int size) {
+		words = new AtomicLongArray((size + 63) >>> 6);
+	}
+
+	boolean get(int index) {
+		return (words.get(index >>> 6) & (1L << index)) != 0;
+	}
+
+	/**
+	 * @return 这一位 是否由 本次调用 设置 之前已经为 1 返回 false
+	 */
+	boolean set(int index) {
+		int position = index >>> 6;
+		long mask = 1L << index;
+		long word = words.get(position);
+		while ((word & mask) == 0) {
+			if (words.compareAndSet(position, word, word | mask)) return true;
+			word = words.get(position);
+		}
+		return false;
+	}
+}
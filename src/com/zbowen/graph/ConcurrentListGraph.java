@@ -0,0 +1,378 @@
+package com.zbowen.graph;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 线程安全的 邻接表 图 顶点的值 不能为 null
+ * 1.顶点存放在 ConcurrentHashMap 中 每个顶点的出边 入边 也存放在 ConcurrentHashMap 中(key 为另一端顶点的值)
+ * 2.addEdge / removeEdge 按照 (from, to) 分段加锁 不同的顶点对 大多落在不同的锁上 可以并行
+ * 3.removeVertex 需要同时删除很多边 获取所有的锁 不常用
+ * bfs / dfs 直接在并发的邻接表上遍历 是弱一致的: 遍历期间 其它线程的修改 可能看得到 也可能看不到 但不会抛出异常
+ * 拓扑排序 最小生成树 最短路径 等算法 在 ListGraph 快照上计算 图没有修改时 快照会重复使用
+ * @author zbowen
+ *
+ */
+@SuppressWarnings("all")
+public class ConcurrentListGraph<V, E> extends Graph<V, E> {
+
+	private static final int STRIPES = 64; //锁的数量 2的幂
+
+	private final Map<V, Vertex<V, E>> vertices = new ConcurrentHashMap<>();
+	private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+	private final AtomicInteger edgesSize = new AtomicInteger();
+	private final AtomicLong modCount = new AtomicLong(); //每次修改之后 加一 用来判断 快照是否过期
+	private volatile Snapshot<V, E> cached;
+
+	public ConcurrentListGraph(WeightManager<E> weightManager) {
+		super(weightManager);
+		for (int i = 0; i < STRIPES; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	private static class Vertex<V, E> {
+		final V value;
+		final Map<V, Edge<V, E>> outEdges = new ConcurrentHashMap<>(); //to -> 边
+		final Map<V, Edge<V, E>> inEdges = new ConcurrentHashMap<>(); //from -> 边
+
+		Vertex(V value) {
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			return value == null ? "null" : value.toString();
+		}
+	}
+
+	/**
+	 * 边 不可变 修改权值时 替换成新的边
+	 */
+	private static class Edge<V, E> {
+		final Vertex<V, E> from;
+		final Vertex<V, E> to;
+		final E weight;
+
+		Edge(Vertex<V, E> from, Vertex<V, E> to, E weight) {
+			this.from = from;
+			this.to = to;
+			this.weight = weight;
+		}
+
+		@Override
+		public String toString() {
+			return "Edge [from=" + from + ", to=" + to + ", weight=" + weight + "]";
+		}
+	}
+
+	/**
+	 * 快照 以及 创建快照之前 读到的 modCount
+	 */
+	private static class Snapshot<V, E> {
+		final long modCount;
+		final ListGraph<V, E> graph;
+
+		Snapshot(long modCount, ListGraph<V, E> graph) {
+			this.modCount = modCount;
+			this.graph = graph;
+		}
+	}
+
+	private ReentrantLock lock(V fromV, V toV) {
+		int hash = 31 * fromV.hashCode() + toV.hashCode();
+		hash ^= hash >>> 16;
+		return locks[hash & (STRIPES - 1)];
+	}
+
+	@Override
+	public int verticesSize() {
+		return vertices.size();
+	}
+
+	@Override
+	public int edgesSize() {
+		return edgesSize.get();
+	}
+
+	@Override
+	public void addVertex(V v) {
+		if (vertices.containsKey(v)) return;
+		vertices.computeIfAbsent(v, Vertex::new);
+		modCount.incrementAndGet();
+	}
+
+	@Override
+	public void removeVertex(V v) {
+		//获取所有的锁 保证删除期间 没有边 指向这个顶点
+		for (ReentrantLock lock : locks) {
+			lock.lock();
+		}
+		try {
+			Vertex<V, E> vertex = vertices.remove(v);
+			if (vertex == null) return;
+			for (Edge<V, E> edge : vertex.outEdges.values()) {
+				edge.to.inEdges.remove(v);
+				edgesSize.decrementAndGet();
+			}
+			for (Edge<V, E> edge : vertex.inEdges.values()) {
+				//自环 已经在上面删除
+				if (edge.from == vertex) continue;
+				edge.from.outEdges.remove(v);
+				edgesSize.decrementAndGet();
+			}
+			modCount.incrementAndGet();
+		} finally {
+			for (ReentrantLock lock : locks) {
+				lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public void addEdge(V fromV, V toV) {
+		addEdge(fromV, toV, null);
+	}
+
+	@Override
+	public void addEdge(V fromV, V toV, E weight) {
+		ReentrantLock lock = lock(fromV, toV);
+		while (true) {
+			//如果顶点不存在就添加
+			Vertex<V, E> from = vertices.computeIfAbsent(fromV, Vertex::new);
+			Vertex<V, E> to = vertices.computeIfAbsent(toV, Vertex::new);
+			lock.lock();
+			try {
+				//获取锁之前 顶点被其它线程删除了 重新添加
+				if (vertices.get(fromV) != from || vertices.get(toV) != to) continue;
+				Edge<V, E> edge = new Edge<>(from, to, weight);
+				if (from.outEdges.put(toV, edge) == null) edgesSize.incrementAndGet();
+				to.inEdges.put(fromV, edge);
+				modCount.incrementAndGet();
+				return;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public void removeEdge(V fromV, V toV) {
+		ReentrantLock lock = lock(fromV, toV);
+		lock.lock();
+		try {
+			Vertex<V, E> from = vertices.get(fromV);
+			Vertex<V, E> to = vertices.get(toV);
+			if (from == null || to == null) return;
+			if (from.outEdges.remove(toV) == null) return;
+			to.inEdges.remove(fromV);
+			edgesSize.decrementAndGet();
+			modCount.incrementAndGet();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	Collection<V> vertexValues() {
+		return vertices.keySet();
+	}
+
+	@Override
+	Collection<V> successors(V v) {
+		Vertex<V, E> vertex = vertices.get(v);
+		return vertex == null ? null : vertex.outEdges.keySet();
+	}
+
+	/**
+	 * 当前的一个 ListGraph 副本 复制 Graph 中的设置
+	 * 不阻塞其它线程的修改 所以是弱一致的 每条边 要么在副本中 要么不在 不会出现一半
+	 * 每次都复制整个图 调用者可以修改返回的副本
+	 */
+	public ListGraph<V, E> snapshot() {
+		ListGraph<V, E> graph = new ListGraph<>(weightManager);
+		copySettings(graph);
+		for (Vertex<V, E> vertex : vertices.values()) {
+			graph.addVertex(vertex.value);
+		}
+		for (Vertex<V, E> vertex : vertices.values()) {
+			for (Edge<V, E> edge : vertex.outEdges.values()) {
+				graph.addEdge(vertex.value, edge.to.value, edge.weight);
+			}
+		}
+		return graph;
+	}
+
+	private void copySettings(ListGraph<V, E> graph) {
+		graph.shortestPathStrategy = shortestPathStrategy;
+		graph.delta = delta;
+		graph.forkJoinPool = forkJoinPool;
+		graph.mstStrategy = mstStrategy;
+		graph.allPairsStrategy = allPairsStrategy;
+		graph.allPairsStorage = allPairsStorage;
+	}
+
+	/**
+	 * 查询使用的 只读快照 modCount 没有变化时 重复使用 上一次的快照
+	 * 先读 modCount 再复制 复制期间的修改 会让 modCount 变化 下一次查询 重新复制
+	 */
+	private ListGraph<V, E> readSnapshot() {
+		long count = modCount.get();
+		Snapshot<V, E> snapshot = cached;
+		if (snapshot == null || snapshot.modCount != count) {
+			snapshot = new Snapshot<>(count, snapshot());
+			cached = snapshot;
+		}
+		//设置 可能在创建快照之后 被修改
+		copySettings(snapshot.graph);
+		return snapshot.graph;
+	}
+
+	@Override
+	public List<V> topologicalSortBfs() {
+		return readSnapshot().topologicalSortBfs();
+	}
+
+	@Override
+	public List<V> topologicalSortDfs() {
+		return readSnapshot().topologicalSortDfs();
+	}
+
+	@Override
+	public List<List<V>> topologicalLayers() {
+		return readSnapshot().topologicalLayers();
+	}
+
+	@Override
+	public Set<EdgeInfo<V, E>> mst() {
+		ListGraph<V, E> graph = readSnapshot();
+		Set<EdgeInfo<V, E>> edgeInfos = graph.mst();
+		lastMstStrategy = graph.getLastMstStrategy();
+		return edgeInfos;
+	}
+
+	@Override
+	public Map<V, PathInfo<V, E>> shortestPath(V begin) {
+		return readSnapshot().shortestPath(begin);
+	}
+
+	@Override
+	public PathInfo<V, E> shortestPath(V from, V to) {
+		return readSnapshot().shortestPath(from, to);
+	}
+
+	@Override
+	public PathInfo<V, E> aStar(V from, V to, Heuristic<V, E> heuristic) {
+		return readSnapshot().aStar(from, to, heuristic);
+	}
+
+	@Override
+	public Map<V, Map<V, PathInfo<V, E>>> shortestPath() {
+		return readSnapshot().shortestPath();
+	}
+
+	@Override
+	public void bfs(V begin, VertexVisitor<V> visitor) {
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return;
+		Set<Vertex<V, E>> visited = new HashSet<>();
+		Queue<Vertex<V, E>> queue = new ArrayDeque<>();
+		queue.offer(vertex);
+		visited.add(vertex);
+		while (!queue.isEmpty()) {
+			Vertex<V, E> poll = queue.poll();
+			if (visitor.visit(poll.value)) return;
+			for (Edge<V, E> edge : poll.outEdges.values()) {
+				if (visited.add(edge.to)) queue.offer(edge.to);
+			}
+		}
+	}
+
+	/**
+	 * 在快照上 按层 并行广度优先遍历
+	 */
+	@Override
+	public void parallelBfs(V begin, VertexVisitor<V> visitor) {
+		readSnapshot().parallelBfs(begin, visitor);
+	}
+
+	/**
+	 * 深度优先遍历 利用栈 迭代
+	 */
+	@Override
+	public void dfs(V begin, VertexVisitor<V> visitor) {
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return;
+		Set<Vertex<V, E>> visited = new HashSet<>();
+		Deque<Vertex<V, E>> stack = new ArrayDeque<>();
+		stack.push(vertex);
+		visited.add(vertex);
+		if (visitor.visit(vertex.value)) return;
+		while (!stack.isEmpty()) {
+			Vertex<V, E> pop = stack.pop();
+			for (Edge<V, E> edge : pop.outEdges.values()) {
+				if (visited.contains(edge.to)) continue;
+				stack.push(pop);
+				stack.push(edge.to);
+				visited.add(edge.to);
+				if (visitor.visit(edge.to.value)) return;
+				break;
+			}
+		}
+	}
+
+	@Override
+	public void dfsRecursive(V value, VertexVisitor<V> visitor) {
+		Vertex<V, E> vertex = vertices.get(value);
+		if (vertex == null) return;
+		dfs(vertex, new HashSet<>(), visitor);
+	}
+
+	/**
+	 * @return visitor 是否要求结束遍历
+	 */
+	private boolean dfs(Vertex<V, E> vertex, Set<Vertex<V, E>> visited, VertexVisitor<V> visitor) {
+		if (visitor.visit(vertex.value)) return true;
+		visited.add(vertex);
+		for (Edge<V, E> edge : vertex.outEdges.values()) {
+			if (visited.contains(edge.to)) continue;
+			if (dfs(edge.to, visited, visitor)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 在快照上遍历 取完之前 其它线程的修改 不影响它
+	 */
+	@Override
+	public Stream<V> bfsStream(V begin) {
+		return readSnapshot().bfsStream(begin);
+	}
+
+	@Override
+	public Stream<V> dfsStream(V begin) {
+		return readSnapshot().dfsStream(begin);
+	}
+
+	@Override
+	public Stream<V> topologicalStream() {
+		return readSnapshot().topologicalStream();
+	}
+
+	@Override
+	public String toString() {
+		return "ConcurrentListGraph [vertices=" + vertices.keySet() + ", edgesSize=" + edgesSize + "]";
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.zbowen.graph;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 元素为 [0, size) 的 线程安全 并查集 不加锁
+ * parents 存放在 AtomicIntegerArray 中
+ * 1.合并: 按编号合并 编号大的根节点 用 CAS 嫁接到 编号小的根节点上 父节点的编号总是不大于自己 不会出现环
+ * 2.查找: 路径分裂 Path Spliting 用 CAS 把父节点 改为祖父节点 失败说明其它线程已经改过 直接继续
+ * 多个线程 同时合并同一对集合时 只有一个线程返回 true
+ * @author zbowen
+ *
+ */
+public class ConcurrentUnionFind {
+
+	private final AtomicIntegerArray parents;
+
+	public ConcurrentUnionFind(int size) {
+		parents = new AtomicIntegerArray(size);
+		for (int i = 0; i < size; i++) {
+			parents.set(i, i);
+		}
+	}
+
+	public int size() {
+		return parents.length();
+	}
+
+	/**
+	 * 路径分裂 Path Spliting
+	 * 返回时 得到的根节点 可能已经被其它线程 合并到别的集合中
+	 */
+	public int find(int v) {
+		int parent = parents.get(v);
+		while (parent != v) {
+			int grand = parents.get(parent);
+			if (grand != parent) parents.compareAndSet(v, parent, grand);
+			v = parent;
+			parent = grand;
+		}
+		return v;
+	}
+
+	/**
+	 * @return v1 v2 原本不在同一个集合 由本次调用合并 返回 true
+	 */
+	public boolean union(int v1, int v2) {
+		while (true) {
+			int p1 = find(v1);
+			int p2 = find(v2);
+			if (p1 == p2) return false;
+			//按编号合并 编号大的 嫁接到 编号小的上
+			if (p1 < p2) {
+				int tmp = p1;
+				p1 = p2;
+				p2 = tmp;
+			}
+			//p1 已经不是根节点 说明被其它线程合并了 重新查找
+			if (parents.compareAndSet(p1, p1, p2)) return true;
+		}
+	}
+
+	public boolean isSame(int v1, int v2) {
+		while (true) {
+			int p1 = find(v1);
+			int p2 = find(v2);
+			if (p1 == p2) return true;
+			//p1 仍然是根节点 说明查找 p2 的过程中 两个集合没有被合并
+			if (parents.get(p1) == p1) return false;
+		}
+	}
+
+}
@@ -0,0 +1,1143 @@
+package com.zbowen.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 压缩稀疏行(CSR)存储的不可变图 由 ListGraph.toCsr() 构建
+ * 顶点用 [0, n) 的整数表示 边用其在 outTargets 中的位置表示
+ * 顶点 i 的出边为 [outOffsets[i], outOffsets[i + 1]) 入边为 [inOffsets[i], inOffsets[i + 1])
+ * @author zbowen
+ *
+ * @param <V> 顶点的值
+ * @param <E> 边的权值
+ */
+@SuppressWarnings("unchecked")
+public class CsrGraph<V, E> extends Graph<V, E> {
+
+	final V[] values; //index -> 顶点的值
+	final Map<V, Integer> indexes; //顶点的值 -> index
+
+	final int[] outOffsets; //出边的偏移量 长度为 n + 1
+	final int[] outTargets; //出边指向的顶点
+	final E[] outWeights; //出边的权值
+	final double[] doubleWeights; //DoubleWeightManager 时 出边权值的 double[] 副本 否则为 null
+	final long[] longWeights; //LongWeightManager 时 出边权值的 long[] 副本 否则为 null
+
+	final int[] inOffsets; //入边的偏移量 长度为 n + 1
+	final int[] inSources; //入边的起点
+	final int[] inEdges; //入边 在 outTargets 中的位置
+
+	CsrGraph(WeightManager<E> weightManager, V[] values, int[] outOffsets, int[] outTargets, E[] outWeights) {
+		super(weightManager);
+		this.values = values;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.outWeights = outWeights;
+		//没有权值的边(null) 只能用于遍历 这时不生成 primitive 副本
+		boolean weighted = true;
+		for (E weight : outWeights) {
+			if (weight == null) {
+				weighted = false;
+				break;
+			}
+		}
+		doubleWeights = weighted && weightManager instanceof DoubleWeightManager ? new double[outWeights.length] : null;
+		longWeights = weighted && weightManager instanceof LongWeightManager ? new long[outWeights.length] : null;
+		for (int edge = 0; edge < outWeights.length; edge++) {
+			if (doubleWeights != null) doubleWeights[edge] = (Double) outWeights[edge];
+			if (longWeights != null) longWeights[edge] = (Long) outWeights[edge];
+		}
+
+		int size = values.length;
+		indexes = new HashMap<>(size * 4 / 3 + 1);
+		for (int i = 0; i < size; i++) {
+			indexes.put(values[i], i);
+		}
+
+		//计数排序 构建反向的 CSR
+		inOffsets = new int[size + 1];
+		for (int edge = 0; edge < outTargets.length; edge++) {
+			inOffsets[outTargets[edge] + 1]++;
+		}
+		for (int i = 0; i < size; i++) {
+			inOffsets[i + 1] += inOffsets[i];
+		}
+		inSources = new int[outTargets.length];
+		inEdges = new int[outTargets.length];
+		int[] cursor = new int[size];
+		for (int from = 0; from < size; from++) {
+			for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+				int to = outTargets[edge];
+				int position = inOffsets[to] + cursor[to]++;
+				inSources[position] = from;
+				inEdges[position] = edge;
+			}
+		}
+	}
+
+	@Override
+	int verticesSize() {
+		return values.length;
+	}
+
+	@Override
+	int edgesSize() {
+		return outTargets.length;
+	}
+
+	@Override
+	void addVertex(V v) {
+		throw new UnsupportedOperationException("CsrGraph is immutable");
+	}
+
+	@Override
+	void removeVertex(V v) {
+		throw new UnsupportedOperationException("CsrGraph is immutable");
+	}
+
+	@Override
+	void addEdge(V fromV, V toV) {
+		throw new UnsupportedOperationException("CsrGraph is immutable");
+	}
+
+	@Override
+	void addEdge(V fromV, V toV, E weight) {
+		throw new UnsupportedOperationException("CsrGraph is immutable");
+	}
+
+	@Override
+	void removeEdge(V fromV, V toV) {
+		throw new UnsupportedOperationException("CsrGraph is immutable");
+	}
+
+	@Override
+	Collection<V> vertexValues() {
+		return Arrays.asList(values);
+	}
+
+	@Override
+	Collection<V> successors(V v) {
+		int index = indexOf(v);
+		if (index < 0) return null;
+		List<V> list = new ArrayList<>(outOffsets[index + 1] - outOffsets[index]);
+		for (int edge = outOffsets[index]; edge < outOffsets[index + 1]; edge++) {
+			list.add(values[outTargets[edge]]);
+		}
+		return list;
+	}
+
+	/**
+	 * 顶点的 index 不存在返回 -1
+	 */
+	int indexOf(V v) {
+		Integer index = indexes.get(v);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * 边的起点 在 outOffsets 中二分查找
+	 */
+	int sourceOf(int edge) {
+		int begin = 0;
+		int end = values.length;
+		//找到最后一个 outOffsets[i] <= edge 的 i
+		while (end - begin > 1) {
+			int mid = (begin + end) >>> 1;
+			if (outOffsets[mid] <= edge) {
+				begin = mid;
+			} else {
+				end = mid;
+			}
+		}
+		return begin;
+	}
+
+	EdgeInfo<V, E> edgeInfo(int from, int edge) {
+		return new EdgeInfo<>(values[from], values[outTargets[edge]], outWeights[edge]);
+	}
+
+	/**
+	 *  广度优先算法 拓扑排序
+	 */
+	@Override
+	public List<V> topologicalSortBfs() {
+		int size = values.length;
+		List<V> list = new ArrayList<>(size);
+		TraversalContext context = TraversalContext.acquire(size);
+		try {
+			//入度表 以及 用数组实现的队列
+			int[] ins = context.counts;
+			int[] queue = context.vertices;
+			int head = 0;
+			int tail = 0;
+			for (int i = 0; i < size; i++) {
+				ins[i] = inOffsets[i + 1] - inOffsets[i];
+				if (ins[i] == 0) queue[tail++] = i;
+			}
+
+			while (head < tail) {
+				int vertex = queue[head++];
+				list.add(values[vertex]);
+				for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+					int to = outTargets[edge];
+					if (--ins[to] == 0) queue[tail++] = to;
+				}
+			}
+		} finally {
+			context.release();
+		}
+
+		//判断 这个图是否存在 环  拓扑排序 只能应用于 有向无环图 DAG
+		if (list.size() != size) {
+			throw new RuntimeException("图中存在环或者没有方向，无法进行拓扑排序！");
+		}
+		return list;
+	}
+
+	@Override
+	public List<List<V>> topologicalLayers() {
+		int size = values.length;
+		int[] degrees = new int[size];
+		for (int i = 0; i < size; i++) {
+			degrees[i] = inOffsets[i + 1] - inOffsets[i];
+		}
+		List<int[]> layers = ParallelKahn.run(degrees, (int vertex, IntConsumer action) -> {
+			for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+				action.accept(outTargets[edge]);
+			}
+		}, forkJoinPool);
+		List<List<V>> list = new ArrayList<>(layers.size());
+		int count = 0;
+		for (int[] layer : layers) {
+			List<V> vertices = new ArrayList<>(layer.length);
+			for (int vertex : layer) {
+				vertices.add(values[vertex]);
+			}
+			list.add(vertices);
+			count += layer.length;
+		}
+		if (count != size) {
+			throw new RuntimeException("图中存在环或者没有方向，无法进行拓扑排序！");
+		}
+		return list;
+	}
+
+	/**
+	 * 深度优先 拓扑排序 逆后序
+	 */
+	@Override
+	public List<V> topologicalSortDfs() {
+		int size = values.length;
+		V[] sorted = (V[]) new Object[size];
+		int last = size;
+		TraversalContext context = TraversalContext.acquire(size);
+		try {
+			BitSet visited = context.visited;
+			//栈 以及 每个顶点下一条要访问的出边
+			int[] stack = context.vertices;
+			int[] cursor = context.counts;
+			for (int begin = 0; begin < size; begin++) {
+				if (visited.get(begin)) continue;
+				int top = 0;
+				stack[top++] = begin;
+				visited.set(begin);
+				cursor[begin] = outOffsets[begin];
+				while (top > 0) {
+					int vertex = stack[top - 1];
+					if (cursor[vertex] < outOffsets[vertex + 1]) {
+						int to = outTargets[cursor[vertex]++];
+						if (visited.get(to)) continue;
+						visited.set(to);
+						cursor[to] = outOffsets[to];
+						stack[top++] = to;
+					} else {
+						//出边都访问完了 放到结果的前面
+						top--;
+						sorted[--last] = values[vertex];
+					}
+				}
+			}
+		} finally {
+			context.release();
+		}
+		List<V> list = new ArrayList<>(size);
+		for (V v : sorted) {
+			list.add(v);
+		}
+		return list;
+	}
+
+	/**
+	 * 最小生成森林 Prim 每个顶点在索引堆中只保留一条权值最小的边
+	 * 和 ListGraph 一样 不考虑边的方向(出边 入边 都松弛) 堆为空时 从下一个还没有连通的顶点 重新开始
+	 * 总是使用 PRIM 不管 mstStrategy 是什么
+	 */
+	@Override
+	public Set<EdgeInfo<V, E>> mst() {
+		int size = values.length;
+		if (size == 0) {
+			lastMstStrategy = null;
+			return null;
+		}
+		lastMstStrategy = MstStrategy.PRIM;
+		Set<EdgeInfo<V, E>> edgeInfos = new HashSet<>();
+		boolean[] selected = new boolean[size];
+		int[] bestEdges = new int[size];
+		IndexedMinHeap<E> heap = new IndexedMinHeap<>(size, weightManager::compare);
+		for (int root = 0; root < size; root++) {
+			if (selected[root]) continue;
+			int vertex = root;
+			while (true) {
+				selected[vertex] = true;
+				for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+					relaxForPrim(outTargets[edge], edge, selected, bestEdges, heap);
+				}
+				for (int position = inOffsets[vertex]; position < inOffsets[vertex + 1]; position++) {
+					relaxForPrim(inSources[position], inEdges[position], selected, bestEdges, heap);
+				}
+				if (heap.isEmpty()) break;
+				vertex = heap.remove();
+				edgeInfos.add(edgeInfo(sourceOf(bestEdges[vertex]), bestEdges[vertex]));
+			}
+		}
+		return edgeInfos;
+	}
+
+	/**
+	 * 用 edge 更新 连向还没有连通的顶点 to 的 权值最小的边
+	 */
+	private void relaxForPrim(int to, int edge, boolean[] selected, int[] bestEdges, IndexedMinHeap<E> heap) {
+		if (selected[to]) return;
+		E weight = outWeights[edge];
+		if (!heap.contains(to)) {
+			heap.add(to, weight);
+		} else if (weightManager.compare(weight, heap.getKey(to)) < 0) {
+			heap.decreaseKey(to, weight);
+		} else {
+			return;
+		}
+		bestEdges[to] = edge;
+	}
+
+	/**
+	 * 单源最短路径 按照 shortestPathStrategy 选择 dijkstra / bellmanFord / SPFA / delta-stepping
+	 */
+	@Override
+	public Map<V, PathInfo<V, E>> shortestPath(V begin) {
+		int source = indexOf(begin);
+		if (source < 0) return new HashMap<>();
+		if (shortestPathStrategy == ShortestPathStrategy.BELLMAN_FORD || shortestPathStrategy == ShortestPathStrategy.SPFA) {
+			boolean spfa = shortestPathStrategy == ShortestPathStrategy.SPFA;
+			if (doubleWeights != null) return bellmanFordDouble(source, spfa);
+			if (longWeights != null) return bellmanFordLong(source, spfa);
+			return bellmanFord(source, spfa);
+		}
+		boolean deltaStepping = shortestPathStrategy == ShortestPathStrategy.DELTA_STEPPING;
+		if (doubleWeights != null) {
+			return deltaStepping ? deltaSteppingDouble(source) : dijkstraDouble(source, doubleWeights);
+		}
+		if (longWeights != null) {
+			return deltaStepping ? deltaSteppingLong(source) : dijkstraLong(source, longWeights);
+		}
+
+		Tree tree = new Tree(source);
+		E[] weights = tree.weights = (E[]) new Object[values.length];
+		boolean[] selected = new boolean[values.length];
+		IndexedMinHeap<E> heap = new IndexedMinHeap<>(values.length, weightManager::compare);
+		weights[source] = weightManager.zero();
+		heap.add(source, weights[source]);
+		while (!heap.isEmpty()) {
+			int vertex = heap.remove();
+			selected[vertex] = true;
+			E minWeight = weights[vertex];
+			for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+				int to = outTargets[edge];
+				//如果 这个顶点已经 被 拉起来了就不需要 松弛
+				if (selected[to]) continue;
+				E newWeight = weightManager.add(minWeight, outWeights[edge]);
+				if (!heap.contains(to)) {
+					heap.add(to, newWeight);
+				} else if (weightManager.compare(newWeight, weights[to]) < 0) {
+					heap.decreaseKey(to, newWeight);
+				} else {
+					continue;
+				}
+				weights[to] = newWeight;
+				tree.parentEdges[to] = edge;
+			}
+		}
+		return tree;
+	}
+
+	/**
+	 * dijkstra 的 double 特化版本 距离存放在 double[] 中 松弛过程不装箱
+	 * @param edgeWeights 每条边的权值 Johnson 会传入重新赋权后的权值
+	 */
+	private Tree dijkstraDouble(int source, double[] edgeWeights) {
+		Tree tree = new Tree(source);
+		double[] weights = tree.doubleWeights = new double[values.length];
+		boolean[] selected = new boolean[values.length];
+		DoubleIndexedMinHeap heap = new DoubleIndexedMinHeap(values.length);
+		heap.add(source, 0);
+		while (!heap.isEmpty()) {
+			int vertex = heap.remove();
+			selected[vertex] = true;
+			double minWeight = weights[vertex];
+			for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+				int to = outTargets[edge];
+				//如果 这个顶点已经 被 拉起来了就不需要 松弛
+				if (selected[to]) continue;
+				double newWeight = minWeight + edgeWeights[edge];
+				if (!heap.contains(to)) {
+					heap.add(to, newWeight);
+				} else if (newWeight < weights[to]) {
+					heap.decreaseKey(to, newWeight);
+				} else {
+					continue;
+				}
+				weights[to] = newWeight;
+				tree.parentEdges[to] = edge;
+			}
+		}
+		return tree;
+	}
+
+	/**
+	 * dijkstra 的 long 特化版本 距离存放在 long[] 中 松弛过程不装箱
+	 * @param edgeWeights 每条边的权值 Johnson 会传入重新赋权后的权值
+	 */
+	private Tree dijkstraLong(int source, long[] edgeWeights) {
+		Tree tree = new Tree(source);
+		long[] weights = tree.longWeights = new long[values.length];
+		boolean[] selected = new boolean[values.length];
+		LongIndexedMinHeap heap = new LongIndexedMinHeap(values.length);
+		heap.add(source, 0L);
+		while (!heap.isEmpty()) {
+			int vertex = heap.remove();
+			selected[vertex] = true;
+			long minWeight = weights[vertex];
+			for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+				int to = outTargets[edge];
+				//如果 这个顶点已经 被 拉起来了就不需要 松弛
+				if (selected[to]) continue;
+				long newWeight = minWeight + edgeWeights[edge];
+				if (!heap.contains(to)) {
+					heap.add(to, newWeight);
+				} else if (newWeight < weights[to]) {
+					heap.decreaseKey(to, newWeight);
+				} else {
+					continue;
+				}
+				weights[to] = newWeight;
+				tree.parentEdges[to] = edge;
+			}
+		}
+		return tree;
+	}
+
+	/**
+	 * 并行 delta-stepping 只计算距离 父边 之后沿着 d[u] + w == d[v] 的边 从源点广度优先遍历得到
+	 */
+	private Tree deltaSteppingDouble(int source) {
+		Tree tree = new Tree(source);
+		double[] weights = tree.doubleWeights = DeltaStepping.run(outOffsets, outTargets, doubleWeights, source, delta, forkJoinPool);
+		int[] queue = new int[values.length];
+		int head = 0, tail = 0;
+		queue[tail++] = source;
+		while (head < tail) {
+			int vertex = queue[head++];
+			for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+				int to = outTargets[edge];
+				if (to == source || tree.parentEdges[to] >= 0 || weights[vertex] + doubleWeights[edge] != weights[to]) continue;
+				tree.parentEdges[to] = edge;
+				queue[tail++] = to;
+			}
+		}
+		return tree;
+	}
+
+	private Tree deltaSteppingLong(int source) {
+		Tree tree = new Tree(source);
+		long[] weights = tree.longWeights = DeltaStepping.run(outOffsets, outTargets, longWeights, source, delta, forkJoinPool);
+		int[] queue = new int[values.length];
+		int head = 0, tail = 0;
+		queue[tail++] = source;
+		while (head < tail) {
+			int vertex = queue[head++];
+			for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+				int to = outTargets[edge];
+				if (to == source || tree.parentEdges[to] >= 0 || weights[vertex] + longWeights[edge] != weights[to]) continue;
+				tree.parentEdges[to] = edge;
+				queue[tail++] = to;
+			}
+		}
+		return tree;
+	}
+
+	/**
+	 * 单源最短路径 的结果 每个顶点只记录 权值 和 父边 路径在取出时才还原
+	 * 权值 存放在 weights / doubleWeights / longWeights 之一
+	 */
+	private class Tree extends ShortestPathTree<V, E> {
+		final int[] parentEdges; //index -> 父边 源点以及没有到达的顶点为 -1
+		E[] weights;
+		double[] doubleWeights;
+		long[] longWeights;
+
+		Tree(int source) {
+			super(source);
+			parentEdges = newParentEdges();
+		}
+
+		@Override
+		int verticesSize() {
+			return values.length;
+		}
+
+		@Override
+		int indexOf(Object value) {
+			return CsrGraph.this.indexOf((V) value);
+		}
+
+		@Override
+		V valueOf(int index) {
+			return values[index];
+		}
+
+		@Override
+		boolean reached(int index) {
+			return parentEdges[index] >= 0;
+		}
+
+		@Override
+		E weightOf(int index) {
+			if (doubleWeights != null) return (E) Double.valueOf(doubleWeights[index]);
+			if (longWeights != null) return (E) Long.valueOf(longWeights[index]);
+			return weights[index];
+		}
+
+		@Override
+		int parentOf(int index) {
+			return parentEdges[index] < 0 ? -1 : sourceOf(parentEdges[index]);
+		}
+
+		@Override
+		EdgeInfo<V, E> parentEdgeInfo(int index) {
+			int edge = parentEdges[index];
+			return edgeInfo(sourceOf(edge), edge);
+		}
+	}
+
+	/**
+	 * 多源最短路径 Floyd 在 n * n 的矩阵上进行 并记录 下一跳 的边
+	 */
+	@Override
+	public Map<V, Map<V, PathInfo<V, E>>> shortestPath() {
+		return allPairsPaths();
+	}
+
+	/**
+	 * 其它类型权值的 Floyd 使用 weightManager 计算 矩阵总是放在堆上
+	 */
+	private AllPairsPaths<V, E> floydBoxed() {
+		int size = values.length;
+		AllPairsPaths.checkHeapSize(size);
+		E[] weights = (E[]) new Object[size * size];
+		//i -> j 路径上的第一条边 -1 代表不可达
+		int[] nextEdges = new int[size * size];
+		for (int i = 0; i < nextEdges.length; i++) {
+			nextEdges[i] = -1;
+		}
+		for (int from = 0; from < size; from++) {
+			for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+				//没有权值的边 不参与计算
+				if (outWeights[edge] == null) continue;
+				int position = from * size + outTargets[edge];
+				weights[position] = outWeights[edge];
+				nextEdges[position] = edge;
+			}
+		}
+
+		for (int k = 0; k < size; k++) {
+			for (int i = 0; i < size; i++) {
+				if (i == k) continue;
+				E weightIK = weights[i * size + k];
+				if (weightIK == null) continue;
+				for (int j = 0; j < size; j++) {
+					//k i j 三者需要满足互不相等
+					if (j == k || j == i) continue;
+					E weightKJ = weights[k * size + j];
+					if (weightKJ == null) continue;
+					E newWeight = weightManager.add(weightIK, weightKJ);
+					E weightIJ = weights[i * size + j];
+					if (weightIJ != null && weightManager.compare(weightIJ, newWeight) <= 0) continue;
+					weights[i * size + j] = newWeight;
+					nextEdges[i * size + j] = nextEdges[i * size + k];
+				}
+			}
+		}
+
+		return new Paths(size, weights, nextEdges);
+	}
+
+	/**
+	 * 多源最短路径 结果只保存 权值矩阵 以及 第一跳矩阵 路径在取出时才还原
+	 * 按照 allPairsStrategy 选择 Floyd / Johnson 按照 allPairsStorage 选择矩阵的存放位置
+	 * 不是 DoubleWeightManager / LongWeightManager 时 使用 floydBoxed 矩阵放在堆上
+	 */
+	public AllPairsPaths<V, E> allPairsPaths() {
+		if (doubleWeights == null && longWeights == null) return floydBoxed();
+		if (allPairsStrategy == AllPairsStrategy.JOHNSON) return johnson();
+		return floyd();
+	}
+
+	/**
+	 * Floyd 直接在 allPairsStorage 选择的矩阵上 交给 BlockedFloydWarshall 分块并行计算
+	 */
+	private AllPairsPaths<V, E> floyd() {
+		int size = values.length;
+		Paths paths = new Paths(size, longWeights != null);
+		paths.fillUnreachable();
+		for (int from = 0; from < size; from++) {
+			for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+				//自环 不参与计算 在 selfLoops 中直接输出
+				if (outTargets[edge] == from) continue;
+				if (longWeights != null) {
+					paths.set(from, outTargets[edge], longWeights[edge], edge);
+				} else {
+					paths.set(from, outTargets[edge], doubleWeights[edge], edge);
+				}
+			}
+		}
+		BlockedFloydWarshall.run(paths, forkJoinPool);
+		for (int i = 0; i < size; i++) {
+			paths.setHop(i, i, -1);
+		}
+		return selfLoops(paths);
+	}
+
+	/**
+	 * 多源最短路径 Johnson 适合有负权边(不能有负权环)的稀疏图
+	 * 1.相当于 从一个 指向所有顶点且权值都为 0 的虚拟源点 执行 bellmanFord 得到每个顶点的势能 h
+	 * 2.把每条边 u -> v 的权值改为 w + h[u] - h[v] 改完之后都不为负
+	 * 3.并行地 以每个顶点为源点 执行 dijkstra 最后把权值还原为 d + h[v] - h[s]
+	 * 重新赋权需要做减法 只支持 DoubleWeightManager / LongWeightManager
+	 */
+	AllPairsPaths<V, E> johnson() {
+		int size = values.length;
+		if (doubleWeights != null) {
+			double[] potentials = potentialsDouble();
+			double[] edgeWeights = new double[doubleWeights.length];
+			for (int from = 0; from < size; from++) {
+				for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+					//浮点误差可能产生极小的负数
+					edgeWeights[edge] = Math.max(0, doubleWeights[edge] + potentials[from] - potentials[outTargets[edge]]);
+				}
+			}
+			Paths paths = new Paths(size, false);
+			//每个源点写入矩阵中不同的行 在 forkJoinPool 中提交的并行流 使用这个线程池
+			forkJoinPool.submit(() -> IntStream.range(0, size).parallel().forEach((int source) -> {
+				Tree tree = dijkstraDouble(source, edgeWeights);
+				int[] firstHops = firstHops(tree);
+				for (int i = 0; i < size; i++) {
+					if (firstHops[i] < 0) continue;
+					paths.set(source, i, tree.doubleWeights[i] + potentials[i] - potentials[source], firstHops[i]);
+				}
+			})).join();
+			return selfLoops(paths);
+		}
+		long[] potentials = potentialsLong();
+		long[] edgeWeights = new long[longWeights.length];
+		for (int from = 0; from < size; from++) {
+			for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+				edgeWeights[edge] = longWeights[edge] + potentials[from] - potentials[outTargets[edge]];
+			}
+		}
+		Paths paths = new Paths(size, true);
+		forkJoinPool.submit(() -> IntStream.range(0, size).parallel().forEach((int source) -> {
+			Tree tree = dijkstraLong(source, edgeWeights);
+			int[] firstHops = firstHops(tree);
+			for (int i = 0; i < size; i++) {
+				if (firstHops[i] < 0) continue;
+				paths.set(source, i, tree.longWeights[i] + potentials[i] - potentials[source], firstHops[i]);
+			}
+		})).join();
+		return selfLoops(paths);
+	}
+
+	/**
+	 * 根据 父边 求出 源点到每个顶点的路径上 的第一条边 源点以及不可达的顶点为 -1
+	 */
+	private int[] firstHops(Tree tree) {
+		int size = values.length;
+		int[] firstHops = new int[size];
+		for (int i = 0; i < size; i++) {
+			firstHops[i] = -1;
+		}
+		int[] stack = new int[size];
+		for (int i = 0; i < size; i++) {
+			if (tree.parentEdges[i] < 0 || firstHops[i] >= 0) continue;
+			//往上走到 第一跳已知 或者 父顶点为源点 的顶点
+			int top = 0;
+			int vertex = i;
+			while (firstHops[vertex] < 0) {
+				int parent = sourceOf(tree.parentEdges[vertex]);
+				if (parent == tree.source) {
+					firstHops[vertex] = tree.parentEdges[vertex];
+					break;
+				}
+				stack[top++] = vertex;
+				vertex = parent;
+			}
+			while (top > 0) {
+				firstHops[stack[--top]] = firstHops[vertex];
+			}
+		}
+		return firstHops;
+	}
+
+	/**
+	 * 和 Floyd 一样 i -> i 只包含 自环
+	 */
+	private Paths selfLoops(Paths paths) {
+		for (int from = 0; from < values.length; from++) {
+			for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+				if (outTargets[edge] != from) continue;
+				if (doubleWeights != null) {
+					paths.set(from, from, doubleWeights[edge], edge);
+				} else {
+					paths.set(from, from, longWeights[edge], edge);
+				}
+			}
+		}
+		return paths;
+	}
+
+	/**
+	 * Johnson 的势能 从虚拟源点 执行 bellmanFord 所有顶点的初始权值都为 0
+	 */
+	private double[] potentialsDouble() {
+		double[] potentials = new double[values.length];
+		bellmanFordDouble(potentials, newParentEdges(), false);
+		return potentials;
+	}
+
+	private long[] potentialsLong() {
+		long[] potentials = new long[values.length];
+		bellmanFordLong(potentials, newParentEdges(), false);
+		return potentials;
+	}
+
+	/**
+	 * 单源最短路径 bellmanFord 的 double 特化版本 支持负权边
+	 * @param spfa 是否只松弛 上一轮权值变小的顶点 的出边
+	 */
+	private Tree bellmanFordDouble(int source, boolean spfa) {
+		Tree tree = new Tree(source);
+		double[] weights = tree.doubleWeights = new double[values.length];
+		Arrays.fill(weights, Double.POSITIVE_INFINITY);
+		weights[source] = 0;
+		bellmanFordDouble(weights, tree.parentEdges, spfa);
+		return tree;
+	}
+
+	private Tree bellmanFordLong(int source, boolean spfa) {
+		Tree tree = new Tree(source);
+		long[] weights = tree.longWeights = new long[values.length];
+		Arrays.fill(weights, Long.MAX_VALUE);
+		weights[source] = 0;
+		bellmanFordLong(weights, tree.parentEdges, spfa);
+		return tree;
+	}
+
+	/**
+	 * 在 weights 上执行 bellmanFord 没有到达的顶点为 正无穷 不从它们松弛
+	 * 某一轮没有任何松弛时提前结束 第 n + 1 轮仍能松弛 说明存在负权环
+	 * 继续松弛直到 父边 成环 抛出 NegativeCycleException
+	 * spfa 时 每一轮只从 上一轮权值变小的顶点 松弛 相当于按轮处理 SPFA 的队列
+	 */
+	private void bellmanFordDouble(double[] weights, int[] parentEdges, boolean spfa) {
+		int size = values.length;
+		boolean[] active = new boolean[size];
+		Arrays.fill(active, true);
+		for (int times = 0; ; times++) {
+			boolean relaxed = false;
+			boolean[] changed = spfa ? new boolean[size] : active;
+			for (int from = 0; from < size; from++) {
+				if (!active[from] || weights[from] == Double.POSITIVE_INFINITY) continue;
+				for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+					double newWeight = weights[from] + doubleWeights[edge];
+					if (newWeight >= weights[outTargets[edge]]) continue;
+					weights[outTargets[edge]] = newWeight;
+					parentEdges[outTargets[edge]] = edge;
+					changed[outTargets[edge]] = true;
+					relaxed = true;
+					if (times >= size) negativeCycleCheck(parentEdges, outTargets[edge]);
+				}
+			}
+			if (!relaxed) return;
+			active = changed;
+		}
+	}
+
+	private void bellmanFordLong(long[] weights, int[] parentEdges, boolean spfa) {
+		int size = values.length;
+		boolean[] active = new boolean[size];
+		Arrays.fill(active, true);
+		for (int times = 0; ; times++) {
+			boolean relaxed = false;
+			boolean[] changed = spfa ? new boolean[size] : active;
+			for (int from = 0; from < size; from++) {
+				if (!active[from] || weights[from] == Long.MAX_VALUE) continue;
+				for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+					long newWeight = weights[from] + longWeights[edge];
+					if (newWeight >= weights[outTargets[edge]]) continue;
+					weights[outTargets[edge]] = newWeight;
+					parentEdges[outTargets[edge]] = edge;
+					changed[outTargets[edge]] = true;
+					relaxed = true;
+					if (times >= size) negativeCycleCheck(parentEdges, outTargets[edge]);
+				}
+			}
+			if (!relaxed) return;
+			active = changed;
+		}
+	}
+
+	/**
+	 * 其它类型权值的 bellmanFord 使用 weightManager 计算 没有到达的顶点 权值为 null
+	 */
+	private Tree bellmanFord(int source, boolean spfa) {
+		int size = values.length;
+		Tree tree = new Tree(source);
+		E[] weights = tree.weights = (E[]) new Object[size];
+		weights[source] = weightManager.zero();
+		boolean[] active = new boolean[size];
+		Arrays.fill(active, true);
+		for (int times = 0; ; times++) {
+			boolean relaxed = false;
+			boolean[] changed = spfa ? new boolean[size] : active;
+			for (int from = 0; from < size; from++) {
+				if (!active[from] || weights[from] == null) continue;
+				for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+					int to = outTargets[edge];
+					E newWeight = weightManager.add(weights[from], outWeights[edge]);
+					if (weights[to] != null && weightManager.compare(newWeight, weights[to]) >= 0) continue;
+					weights[to] = newWeight;
+					tree.parentEdges[to] = edge;
+					changed[to] = true;
+					relaxed = true;
+					if (times >= size) negativeCycleCheck(tree.parentEdges, to);
+				}
+			}
+			if (!relaxed) return tree;
+			active = changed;
+		}
+	}
+
+	private int[] newParentEdges() {
+		int[] parentEdges = new int[values.length];
+		for (int i = 0; i < parentEdges.length; i++) {
+			parentEdges[i] = -1;
+		}
+		return parentEdges;
+	}
+
+	/**
+	 * 从 vertex 沿着 父边 往回走 回到走过的顶点 说明 父边 成环 这个环一定是负权环
+	 * 走到没有父边的顶点 说明 父边 还没有成环 直接返回
+	 */
+	private void negativeCycleCheck(int[] parentEdges, int vertex) {
+		boolean[] visited = new boolean[values.length];
+		while (!visited[vertex]) {
+			visited[vertex] = true;
+			if (parentEdges[vertex] < 0) return;
+			vertex = sourceOf(parentEdges[vertex]);
+		}
+		LinkedList<EdgeInfo<V, E>> cycle = new LinkedList<>();
+		int current = vertex;
+		do {
+			int from = sourceOf(parentEdges[current]);
+			cycle.addFirst(edgeInfo(from, parentEdges[current]));
+			current = from;
+		} while (current != vertex);
+		throw new NegativeCycleException(cycle);
+	}
+
+	/**
+	 * 多源最短路径 的结果 第一跳 为 边的位置
+	 */
+	private class Paths extends AllPairsPaths<V, E> {
+		Paths(int size, boolean longWeights) {
+			super(size, longWeights, allPairsStorage);
+		}
+
+		Paths(int size, Object[] weights, int[] hops) {
+			super(size, weights, hops);
+		}
+
+		@Override
+		int indexOf(Object value) {
+			return CsrGraph.this.indexOf((V) value);
+		}
+
+		@Override
+		V valueOf(int index) {
+			return values[index];
+		}
+
+		@Override
+		int targetOf(int hop) {
+			return outTargets[hop];
+		}
+
+		@Override
+		EdgeInfo<V, E> edgeInfo(int hop) {
+			return CsrGraph.this.edgeInfo(sourceOf(hop), hop);
+		}
+	}
+
+	/**
+	 * 广度优先遍历 利用数组实现的队列
+	 */
+	@Override
+	public void bfs(V begin, VertexVisitor<V> visitor) {
+		int source = indexOf(begin);
+		if (source < 0) return;
+		TraversalContext context = TraversalContext.acquire(values.length);
+		try {
+			BitSet visited = context.visited;
+			int[] queue = context.vertices;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = source;
+			visited.set(source);
+			while (head < tail) {
+				int vertex = queue[head++];
+				if (visitor.visit(values[vertex])) return;
+				for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+					int to = outTargets[edge];
+					if (visited.get(to)) continue;
+					visited.set(to);
+					queue[tail++] = to;
+				}
+			}
+		} finally {
+			context.release();
+		}
+	}
+
+	/**
+	 * 按层 并行广度优先遍历 每一层 根据大小 选择 沿出边自顶向下 或 沿入边自底向上
+	 * visitor 在整层展开之后 才访问这一层的顶点 见 ParallelBfs
+	 */
+	@Override
+	public void parallelBfs(V begin, VertexVisitor<V> visitor) {
+		int source = indexOf(begin);
+		if (source < 0) return;
+		ParallelBfs.run(outOffsets, outTargets, inOffsets, inSources, source,
+				(int vertex) -> visitor.visit(values[vertex]), forkJoinPool);
+	}
+
+	/**
+	 * 深度优先遍历 利用栈 迭代 栈中记录每个顶点下一条要访问的出边
+	 */
+	@Override
+	public void dfs(V begin, VertexVisitor<V> visitor) {
+		int source = indexOf(begin);
+		if (source < 0) return;
+		TraversalContext context = TraversalContext.acquire(values.length);
+		try {
+			BitSet visited = context.visited;
+			int[] stack = context.vertices;
+			int[] cursor = context.counts;
+			int top = 0;
+			stack[top++] = source;
+			visited.set(source);
+			cursor[source] = outOffsets[source];
+			if (visitor.visit(values[source])) return;
+			while (top > 0) {
+				int vertex = stack[top - 1];
+				if (cursor[vertex] == outOffsets[vertex + 1]) {
+					top--;
+					continue;
+				}
+				int to = outTargets[cursor[vertex]++];
+				if (visited.get(to)) continue;
+				visited.set(to);
+				cursor[to] = outOffsets[to];
+				stack[top++] = to;
+				if (visitor.visit(values[to])) return;
+			}
+		} finally {
+			context.release();
+		}
+	}
+
+	/**
+	 * 深度优先遍历 递归
+	 */
+	@Override
+	public void dfsRecursive(V value, VertexVisitor<V> visitor) {
+		int source = indexOf(value);
+		if (source < 0) return;
+		TraversalContext context = TraversalContext.acquire(values.length);
+		try {
+			dfs(source, context.visited, visitor);
+		} finally {
+			context.release();
+		}
+	}
+
+	private boolean dfs(int vertex, BitSet visited, VertexVisitor<V> visitor) {
+		if (visitor.visit(values[vertex])) return true;
+		visited.set(vertex);
+		for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+			int to = outTargets[edge];
+			if (visited.get(to)) continue;
+			if (dfs(to, visited, visitor)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 广度优先遍历 的 Stream 取出一个顶点时 才把它的出边 加入队列
+	 */
+	@Override
+	public Stream<V> bfsStream(V begin) {
+		int source = indexOf(begin);
+		if (source < 0) return Stream.empty();
+		return StreamSupport.stream(new BfsSpliterator(source), false);
+	}
+
+	/**
+	 * 深度优先遍历 的 Stream 栈中保存 每个顶点下一条要访问的出边
+	 */
+	@Override
+	public Stream<V> dfsStream(V begin) {
+		int source = indexOf(begin);
+		if (source < 0) return Stream.empty();
+		return StreamSupport.stream(new DfsSpliterator(source), false);
+	}
+
+	/**
+	 * 拓扑排序 的 Stream 取出一个顶点时 才减少它指向顶点的入度
+	 */
+	@Override
+	public Stream<V> topologicalStream() {
+		return StreamSupport.stream(new TopologicalSpliterator(), false);
+	}
+
+	private class BfsSpliterator extends Spliterators.AbstractSpliterator<V> {
+		private final BitSet visited = new BitSet(values.length);
+		private final int[] queue = new int[values.length];
+		private int head;
+		private int tail;
+
+		BfsSpliterator(int source) {
+			super(values.length, ORDERED | DISTINCT);
+			queue[tail++] = source;
+			visited.set(source);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action) {
+			if (head == tail) return false;
+			int vertex = queue[head++];
+			for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+				int to = outTargets[edge];
+				if (visited.get(to)) continue;
+				visited.set(to);
+				queue[tail++] = to;
+			}
+			action.accept(values[vertex]);
+			return true;
+		}
+	}
+
+	private class DfsSpliterator extends Spliterators.AbstractSpliterator<V> {
+		private final BitSet visited = new BitSet(values.length);
+		private final int[] stack = new int[values.length];
+		private final int[] cursor = new int[values.length];
+		private int top;
+		private int begin; //还没有取出的 起点 取出后为 -1
+
+		DfsSpliterator(int source) {
+			super(values.length, ORDERED | DISTINCT);
+			begin = source;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action) {
+			int next = begin;
+			begin = -1;
+			while (next < 0 && top > 0) {
+				int vertex = stack[top - 1];
+				if (cursor[vertex] == outOffsets[vertex + 1]) {
+					top--;
+					continue;
+				}
+				int to = outTargets[cursor[vertex]++];
+				if (!visited.get(to)) next = to;
+			}
+			if (next < 0) return false;
+			visited.set(next);
+			cursor[next] = outOffsets[next];
+			stack[top++] = next;
+			action.accept(values[next]);
+			return true;
+		}
+	}
+
+	private class TopologicalSpliterator extends Spliterators.AbstractSpliterator<V> {
+		private final int[] ins = new int[values.length];
+		private final int[] queue = new int[values.length];
+		private int head;
+		private int tail;
+
+		TopologicalSpliterator() {
+			super(values.length, ORDERED | DISTINCT);
+			for (int i = 0; i < values.length; i++) {
+				ins[i] = inOffsets[i + 1] - inOffsets[i];
+				if (ins[i] == 0) queue[tail++] = i;
+			}
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action) {
+			if (head == tail) {
+				//判断 这个图是否存在 环  拓扑排序 只能应用于 有向无环图 DAG
+				if (tail != values.length) throw new RuntimeException("图中存在环或者没有方向，无法进行拓扑排序！");
+				return false;
+			}
+			int vertex = queue[head++];
+			for (int edge = outOffsets[vertex]; edge < outOffsets[vertex + 1]; edge++) {
+				int to = outTargets[edge];
+				if (--ins[to] == 0) queue[tail++] = to;
+			}
+			action.accept(values[vertex]);
+			return true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CsrGraph [vertices=" + values.length + ", edges=" + outTargets.length + "]";
+	}
+
+}
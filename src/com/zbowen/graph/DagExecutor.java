@@ -0,0 +1,257 @@
+package com.zbowen.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 按照 有向无环图 的依赖关系 并发执行每个顶点的任务
+ * 一个顶点的所有前驱(入边的起点) 都执行完成后 它的任务 立即交给 executor
+ * 1.同时执行的任务 不超过 maxConcurrency 其余已经可以执行的顶点 在队列中等待
+ * 2.一个任务失败(抛出异常)后 不再启动新的任务 正在执行的任务 会被中断
+ * 3.记录每个任务的 开始时间 和 耗时
+ * executor 可以是 ForkJoinPool 或者 Executors.newVirtualThreadPerTaskExecutor() 等
+ * 执行的是 调用 execute 时 图的快照 之后对图的修改 不影响这次执行
+ * @author zbowen
+ *
+ */
+public final class DagExecutor {
+
+	private final Executor executor;
+	private final int maxConcurrency;
+
+	public DagExecutor(Executor executor, int maxConcurrency) {
+		if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency需要大于0");
+		this.executor = executor;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	public interface Task<V> {
+		void run(V v) throws Exception;
+	}
+
+	public <V, E> Result<V> execute(ListGraph<V, E> graph, Task<V> task) throws InterruptedException {
+		return execute(graph.toCsr(), task);
+	}
+
+	/**
+	 * 阻塞到 所有任务执行完成 或者 失败后 正在执行的任务都结束
+	 * 存在环时 抛出异常 不执行任何任务
+	 * 调用者被中断时 和任务失败一样 取消剩下的任务 然后抛出 InterruptedException
+	 */
+	public <V, E> Result<V> execute(CsrGraph<V, E> graph, Task<V> task) throws InterruptedException {
+		//存在环时 抛出异常
+		graph.topologicalSortBfs();
+		Run<V, E> run = new Run<>(graph, task);
+		run.start();
+		return run.await();
+	}
+
+	/**
+	 * 一次执行的状态 除了 ins 以外 都由 this 保护
+	 */
+	private class Run<V, E> {
+		private final CsrGraph<V, E> graph;
+		private final Task<V> task;
+		private final int size;
+		private final AtomicIntegerArray ins; //还没有完成的前驱数量
+		private final ArrayDeque<Integer> ready = new ArrayDeque<>(); //可以执行 还没有交给 executor 的顶点
+		private final Thread[] threads; //正在执行任务的线程 用于中断
+		private final boolean[] interrupted; //index -> 是否被 fail 中断过
+		private final long[] startTimes; //index -> 开始时间 System.nanoTime()
+		private final long[] durations; //index -> 耗时 纳秒 没有执行完成为 -1
+		private int running; //已经交给 executor 还没有结束的任务
+		private int finished; //执行成功的任务
+		private int failedVertex = -1;
+		private Throwable failure;
+
+		Run(CsrGraph<V, E> graph, Task<V> task) {
+			this.graph = graph;
+			this.task = task;
+			size = graph.values.length;
+			ins = new AtomicIntegerArray(size);
+			threads = new Thread[size];
+			interrupted = new boolean[size];
+			startTimes = new long[size];
+			durations = new long[size];
+			for (int i = 0; i < size; i++) {
+				int in = graph.inOffsets[i + 1] - graph.inOffsets[i];
+				ins.set(i, in);
+				durations[i] = -1;
+				if (in == 0) ready.offer(i);
+			}
+		}
+
+		synchronized void start() {
+			dispatch();
+		}
+
+		/**
+		 * 把队列中的顶点 交给 executor 直到 达到 maxConcurrency
+		 */
+		private void dispatch() {
+			while (failure == null && running < maxConcurrency && !ready.isEmpty()) {
+				int vertex = ready.poll();
+				running++;
+				try {
+					executor.execute(() -> runTask(vertex));
+				} catch (RuntimeException e) {
+					//executor 拒绝执行
+					running--;
+					fail(vertex, e);
+				}
+			}
+			if (running == 0) notifyAll();
+		}
+
+		private void runTask(int vertex) {
+			synchronized (this) {
+				//失败后 已经交给 executor 的任务 不再执行
+				if (failure != null) {
+					running--;
+					if (running == 0) notifyAll();
+					return;
+				}
+				threads[vertex] = Thread.currentThread();
+				startTimes[vertex] = System.nanoTime();
+			}
+			Throwable error = null;
+			try {
+				task.run(graph.values[vertex]);
+			} catch (Throwable e) {
+				error = e;
+			}
+			long end = System.nanoTime();
+			IntList released = new IntList();
+			if (error == null) {
+				for (int edge = graph.outOffsets[vertex]; edge < graph.outOffsets[vertex + 1]; edge++) {
+					int to = graph.outTargets[edge];
+					if (ins.decrementAndGet(to) == 0) released.add(to);
+				}
+			}
+			boolean clear;
+			synchronized (this) {
+				//之后 fail 不会再中断这个线程
+				threads[vertex] = null;
+				clear = interrupted[vertex];
+				running--;
+				if (error == null) {
+					durations[vertex] = end - startTimes[vertex];
+					finished++;
+					for (int i = 0; i < released.size(); i++) {
+						ready.offer(released.get(i));
+					}
+				} else {
+					fail(vertex, error);
+				}
+				dispatch();
+			}
+			//只清除 fail 设置的中断标记 它不能带到 executor 的下一个任务 其它来源的中断(例如关闭线程池) 保留
+			if (clear) Thread.interrupted();
+		}
+
+		/**
+		 * 记录第一个失败 中断其它正在执行的任务
+		 */
+		private void fail(int vertex, Throwable error) {
+			if (failure != null) {
+				failure.addSuppressed(error);
+				return;
+			}
+			failure = error;
+			failedVertex = vertex;
+			ready.clear();
+			for (int i = 0; i < size; i++) {
+				if (threads[i] == null) continue;
+				threads[i].interrupt();
+				interrupted[i] = true;
+			}
+		}
+
+		synchronized Result<V> await() throws InterruptedException {
+			try {
+				while (running > 0 || (failure == null && finished < size)) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				fail(-1, e);
+				throw e;
+			}
+			Map<V, Long> startTimes = new HashMap<>();
+			Map<V, Long> durations = new HashMap<>();
+			List<V> cancelled = new ArrayList<>();
+			for (int i = 0; i < size; i++) {
+				V value = graph.values[i];
+				if (this.durations[i] >= 0) {
+					startTimes.put(value, this.startTimes[i]);
+					durations.put(value, this.durations[i]);
+				} else if (i != failedVertex) {
+					cancelled.add(value);
+				}
+			}
+			V failed = failedVertex < 0 ? null : graph.values[failedVertex];
+			return new Result<>(startTimes, durations, cancelled, failed, failure);
+		}
+	}
+
+	public static class Result<V> {
+		private final Map<V, Long> startTimes;
+		private final Map<V, Long> durations;
+		private final List<V> cancelled;
+		private final V failedVertex;
+		private final Throwable failure;
+
+		Result(Map<V, Long> startTimes, Map<V, Long> durations, List<V> cancelled, V failedVertex, Throwable failure) {
+			this.startTimes = Collections.unmodifiableMap(startTimes);
+			this.durations = Collections.unmodifiableMap(durations);
+			this.cancelled = Collections.unmodifiableList(cancelled);
+			this.failedVertex = failedVertex;
+			this.failure = failure;
+		}
+
+		public boolean isSuccess() {
+			return failure == null;
+		}
+
+		/**
+		 * 执行成功的任务 开始时的 System.nanoTime()
+		 */
+		public Map<V, Long> getStartTimes() {
+			return startTimes;
+		}
+
+		/**
+		 * 执行成功的任务 耗时 纳秒
+		 */
+		public Map<V, Long> getDurations() {
+			return durations;
+		}
+
+		/**
+		 * 因为失败 没有执行或者被中断的任务
+		 */
+		public List<V> getCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * 第一个失败的任务 executor 拒绝执行 也算失败
+		 */
+		public V getFailedVertex() {
+			return failedVertex;
+		}
+
+		/**
+		 * 第一个失败的异常 之后的失败 在 getSuppressed() 中
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+	}
+
+}
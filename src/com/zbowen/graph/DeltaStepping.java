@@ -0,0 +1,275 @@
+package com.zbowen.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CSR 数组上的 并行 delta-stepping 单源最短路径 不支持负权边
+ * 顶点按照 距离 / delta 放进不同的桶 每次处理编号最小的桶:
+ * 1.反复并行松弛桶中顶点的 轻边(权值 <= delta) 直到桶为空 (轻边松弛出的顶点可能回到同一个桶)
+ * 2.并行松弛 这个桶中取出过的所有顶点的 重边(权值 > delta) 它们只会进入后面的桶
+ * 距离存放在 AtomicLongArray 中 用 CAS 取较小值 非负 double 的位模式 和数值的大小顺序一致
+ * @author zbowen
+ *
+ */
+final class DeltaStepping {
+
+	//一个任务 最少处理的顶点数量
+	private static final int THRESHOLD = 64;
+
+	private DeltaStepping() {}
+
+	/**
+	 * @return 源点到每个顶点的距离 不可达为 INFINITY
+	 */
+	static double[] run(int[] offsets, int[] targets, double[] weights, int source, double delta, ForkJoinPool pool) {
+		double maxWeight = 0;
+		for (double weight : weights) {
+			if (weight < 0) throw new IllegalArgumentException("delta-stepping不支持负权边");
+			maxWeight = Math.max(maxWeight, weight);
+		}
+		DoubleKernel kernel = new DoubleKernel(weights, delta > 0 ? delta : autoDelta(maxWeight, offsets));
+		AtomicLongArray distances = run(kernel, offsets, targets, source, Double.doubleToRawLongBits(Double.POSITIVE_INFINITY),
+				Double.doubleToRawLongBits(0), pool);
+		double[] result = new double[distances.length()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = Double.longBitsToDouble(distances.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * @return 源点到每个顶点的距离 不可达为 Long.MAX_VALUE
+	 */
+	static long[] run(int[] offsets, int[] targets, long[] weights, int source, double delta, ForkJoinPool pool) {
+		long maxWeight = 0;
+		for (long weight : weights) {
+			if (weight < 0) throw new IllegalArgumentException("delta-stepping不支持负权边");
+			maxWeight = Math.max(maxWeight, weight);
+		}
+		LongKernel kernel = new LongKernel(weights, delta > 0 ? delta : autoDelta(maxWeight, offsets));
+		AtomicLongArray distances = run(kernel, offsets, targets, source, Long.MAX_VALUE, 0L, pool);
+		long[] result = new long[distances.length()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = distances.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * 没有指定 delta 时 使用 最大权值 / 平均出度
+	 */
+	private static double autoDelta(double maxWeight, int[] offsets) {
+		int size = offsets.length - 1;
+		double degree = size == 0 ? 1 : Math.max(1.0, (double) offsets[size] / size);
+		return maxWeight > 0 ? maxWeight / degree : 1;
+	}
+
+	private static AtomicLongArray run(Kernel kernel, int[] offsets, int[] targets, int source, long infinity, long zero,
+			ForkJoinPool pool) {
+		int size = offsets.length - 1;
+		AtomicLongArray distances = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			distances.set(i, infinity);
+		}
+		distances.set(source, zero);
+		Relaxation relaxation = new Relaxation(kernel, offsets, targets, distances, pool);
+
+		//桶编号 -> 放进这个桶的顶点 同一个顶点可能重复出现 距离已经不在这个桶中的顶点 取出时跳过
+		TreeMap<Long, List<int[]>> buckets = new TreeMap<>();
+		insert(buckets, kernel, distances, new int[] {source});
+		int[] stamps = new int[size]; //用来给 frontier 去重
+		int round = 0;
+		boolean[] removed = new boolean[size]; //当前桶中 取出过的顶点
+		IntList removedList = new IntList();
+		while (!buckets.isEmpty()) {
+			long bucket = buckets.firstKey();
+			//阶段1 轻边
+			List<int[]> chunks;
+			while ((chunks = buckets.remove(bucket)) != null) {
+				round++;
+				IntList frontier = new IntList();
+				for (int[] chunk : chunks) {
+					for (int vertex : chunk) {
+						if (stamps[vertex] == round || kernel.bucketOf(distances.get(vertex)) != bucket) continue;
+						stamps[vertex] = round;
+						frontier.add(vertex);
+						if (!removed[vertex]) {
+							removed[vertex] = true;
+							removedList.add(vertex);
+						}
+					}
+				}
+				insert(buckets, kernel, distances, relaxation.relax(frontier.toArray(), true));
+			}
+			//阶段2 重边
+			int[] settled = removedList.toArray();
+			insert(buckets, kernel, distances, relaxation.relax(settled, false));
+			for (int vertex : settled) {
+				removed[vertex] = false;
+			}
+			removedList.clear();
+		}
+		return distances;
+	}
+
+	private static void insert(TreeMap<Long, List<int[]>> buckets, Kernel kernel, AtomicLongArray distances, int[] vertices) {
+		Map<Long, IntList> groups = new TreeMap<>();
+		for (int vertex : vertices) {
+			groups.computeIfAbsent(kernel.bucketOf(distances.get(vertex)), bucket -> new IntList()).add(vertex);
+		}
+		for (Map.Entry<Long, IntList> entry : groups.entrySet()) {
+			buckets.computeIfAbsent(entry.getKey(), bucket -> new ArrayList<>()).add(entry.getValue().toArray());
+		}
+	}
+
+	/**
+	 * 松弛一批顶点的 轻边 / 重边 返回距离变小了的顶点
+	 */
+	private static class Relaxation {
+		private final Kernel kernel;
+		private final int[] offsets;
+		private final int[] targets;
+		private final AtomicLongArray distances;
+		private final ForkJoinPool pool;
+
+		Relaxation(Kernel kernel, int[] offsets, int[] targets, AtomicLongArray distances, ForkJoinPool pool) {
+			this.kernel = kernel;
+			this.offsets = offsets;
+			this.targets = targets;
+			this.distances = distances;
+			this.pool = pool;
+		}
+
+		int[] relax(int[] vertices, boolean light) {
+			RelaxTask task = new RelaxTask(this, vertices, 0, vertices.length, light);
+			//compute() 会拆分任务 拆分出的任务 只能在 pool 中执行 否则会 fork 到 commonPool
+			if (vertices.length <= THRESHOLD) return task.compute();
+			return pool.invoke(task);
+		}
+
+		void relax(int vertex, boolean light, IntList updated) {
+			long distance = distances.get(vertex);
+			for (int edge = offsets[vertex]; edge < offsets[vertex + 1]; edge++) {
+				if (kernel.light(edge) != light) continue;
+				int to = targets[edge];
+				long newDistance = kernel.add(distance, edge);
+				long oldDistance = distances.get(to);
+				while (newDistance < oldDistance) {
+					if (distances.compareAndSet(to, oldDistance, newDistance)) {
+						updated.add(to);
+						break;
+					}
+					oldDistance = distances.get(to);
+				}
+			}
+		}
+	}
+
+	private static class RelaxTask extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 1L;
+		private final Relaxation relaxation;
+		private final int[] vertices;
+		private final int begin;
+		private final int end;
+		private final boolean light;
+
+		RelaxTask(Relaxation relaxation, int[] vertices, int begin, int end, boolean light) {
+			this.relaxation = relaxation;
+			this.vertices = vertices;
+			this.begin = begin;
+			this.end = end;
+			this.light = light;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (end - begin <= THRESHOLD) {
+				IntList updated = new IntList();
+				for (int i = begin; i < end; i++) {
+					relaxation.relax(vertices[i], light, updated);
+				}
+				return updated.toArray();
+			}
+			int mid = (begin + end) >>> 1;
+			RelaxTask left = new RelaxTask(relaxation, vertices, begin, mid, light);
+			left.fork();
+			int[] right = new RelaxTask(relaxation, vertices, mid, end, light).compute();
+			int[] updated = left.join();
+			int[] result = Arrays.copyOf(updated, updated.length + right.length);
+			System.arraycopy(right, 0, result, updated.length, right.length);
+			return result;
+		}
+	}
+
+	private interface Kernel {
+		/**
+		 * distance 加上 edge 的权值
+		 */
+		long add(long distance, int edge);
+
+		boolean light(int edge);
+
+		long bucketOf(long distance);
+	}
+
+	/**
+	 * 距离以 double 的位模式 存放在 long 中
+	 */
+	private static class DoubleKernel implements Kernel {
+		private final double[] weights;
+		private final double delta;
+
+		DoubleKernel(double[] weights, double delta) {
+			this.weights = weights;
+			this.delta = delta;
+		}
+
+		@Override
+		public long add(long distance, int edge) {
+			return Double.doubleToRawLongBits(Double.longBitsToDouble(distance) + weights[edge]);
+		}
+
+		@Override
+		public boolean light(int edge) {
+			return weights[edge] <= delta;
+		}
+
+		@Override
+		public long bucketOf(long distance) {
+			return (long) (Double.longBitsToDouble(distance) / delta);
+		}
+	}
+
+	private static class LongKernel implements Kernel {
+		private final long[] weights;
+		private final double delta;
+
+		LongKernel(long[] weights, double delta) {
+			this.weights = weights;
+			this.delta = delta;
+		}
+
+		@Override
+		public long add(long distance, int edge) {
+			return distance + weights[edge];
+		}
+
+		@Override
+		public boolean light(int edge) {
+			return weights[edge] <= delta;
+		}
+
+		@Override
+		public long bucketOf(long distance) {
+			return (long) (distance / delta);
+		}
+	}
+
+}
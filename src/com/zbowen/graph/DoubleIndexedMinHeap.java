@@ -0,0 +1,202 @@
+package com.zbowen.graph;
+
+/**
+ * 键为 double 的索引最小堆 用法同 IndexedMinHeap 键直接存放在 double[] 中 不需要装箱
+ * @author zbowen
+ *
+ */
+public class DoubleIndexedMinHeap {
+	private int size;
+	//堆中的位置 -> 索引
+	private int[] heap;
+	//索引 -> 堆中的位置 不在堆中为 -1
+	private int[] positions;
+	//索引 -> 键
+	private double[] keys;
+	private static final int DEFAULT_CAPACITY = 10;
+
+	public DoubleIndexedMinHeap(int capacity) {
+		capacity = Math.max(capacity, DEFAULT_CAPACITY);
+		heap = new int[capacity];
+		positions = new int[capacity];
+		keys = new double[capacity];
+		for (int i = 0; i < capacity; i++) {
+			positions[i] = -1;
+		}
+	}
+
+	public DoubleIndexedMinHeap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	/**
+	 * 索引 index 是否在堆中
+	 */
+	public boolean contains(int index) {
+		return index >= 0 && index < positions.length && positions[index] != -1;
+	}
+
+	/**
+	 * 获取 索引 index 对应的键
+	 */
+	public double getKey(int index) {
+		containsCheck(index);
+		return keys[index];
+	}
+
+	public void add(int index, double key) {
+		indexCheck(index);
+		ensureCapacity(index + 1);
+		if (positions[index] != -1) {
+			throw new IllegalArgumentException("index " + index + " is already in heap");
+		}
+		heap[size] = index;
+		positions[index] = size;
+		keys[index] = key;
+		siftUp(size++);
+	}
+
+	/**
+	 * 将索引 index 的键减小为 key
+	 */
+	public void decreaseKey(int index, double key) {
+		containsCheck(index);
+		if (key > keys[index]) {
+			throw new IllegalArgumentException("key must not be greater than the current key");
+		}
+		keys[index] = key;
+		siftUp(positions[index]);
+	}
+
+	/**
+	 * 堆顶元素的索引
+	 */
+	public int get() {
+		emptyCheck();
+		return heap[0];
+	}
+
+	/**
+	 * 删除堆顶元素 返回其索引
+	 */
+	public int remove() {
+		emptyCheck();
+
+		int root = heap[0];
+		int lastIndex = --size;
+		heap[0] = heap[lastIndex];
+		positions[heap[0]] = 0;
+		positions[root] = -1;
+
+		if (size > 0) siftDown(0);
+		return root;
+	}
+
+	/**
+	 * 让position位置的元素下滤
+	 * @param position
+	 */
+	private void siftDown(int position) {
+		int index = heap[position];
+		double key = keys[index];
+		int half = size >> 1;
+		while (position < half) {
+			// 默认为左子节点跟它进行比较
+			int childPosition = (position << 1) + 1;
+			int child = heap[childPosition];
+
+			// 右子节点
+			int rightPosition = childPosition + 1;
+
+			// 选出左右子节点最小的那个
+			if (rightPosition < size && keys[heap[rightPosition]] < keys[child]) {
+				child = heap[childPosition = rightPosition];
+			}
+
+			if (key <= keys[child]) break;
+
+			// 将子节点存放到position位置
+			heap[position] = child;
+			positions[child] = position;
+			position = childPosition;
+		}
+		heap[position] = index;
+		positions[index] = position;
+	}
+
+	/**
+	 * 让position位置的元素上滤
+	 * @param position
+	 */
+	private void siftUp(int position) {
+		int index = heap[position];
+		double key = keys[index];
+		while (position > 0) {
+			int parentPosition = (position - 1) >> 1;
+			int parent = heap[parentPosition];
+			if (key >= keys[parent]) break;
+
+			// 将父元素存储在position位置
+			heap[position] = parent;
+			positions[parent] = position;
+			position = parentPosition;
+		}
+		heap[position] = index;
+		positions[index] = position;
+	}
+
+	private void ensureCapacity(int capacity) {
+		int oldCapacity = positions.length;
+		if (oldCapacity >= capacity) return;
+
+		// 新容量为旧容量的1.5倍
+		int newCapacity = Math.max(oldCapacity + (oldCapacity >> 1), capacity);
+		int[] newHeap = new int[newCapacity];
+		int[] newPositions = new int[newCapacity];
+		double[] newKeys = new double[newCapacity];
+		for (int i = 0; i < oldCapacity; i++) {
+			newHeap[i] = heap[i];
+			newPositions[i] = positions[i];
+			newKeys[i] = keys[i];
+		}
+		for (int i = oldCapacity; i < newCapacity; i++) {
+			newPositions[i] = -1;
+		}
+		heap = newHeap;
+		positions = newPositions;
+		keys = newKeys;
+	}
+
+	private void emptyCheck() {
+		if (size == 0) {
+			throw new IndexOutOfBoundsException("Heap is empty");
+		}
+	}
+
+	private void indexCheck(int index) {
+		if (index < 0) {
+			throw new IndexOutOfBoundsException("index must not be negative: " + index);
+		}
+	}
+
+	private void containsCheck(int index) {
+		if (!contains(index)) {
+			throw new IllegalArgumentException("index " + index + " is not in heap");
+		}
+	}
+}
@@ -27,9 +27,13 @@ public class GenericUnionFind<V> {
 		
 	}
 
-	public void makeSet(V value) {
-		if (nodes.containsKey(value)) return;
+	/**
+	 * @return value 原本不在并查集中 返回 true
+	 */
+	public boolean makeSet(V value) {
+		if (nodes.containsKey(value)) return false;
 		nodes.put(value, new Node<>(value));
+		return true;
 	}
 	
 	/**
@@ -42,12 +46,15 @@ public class GenericUnionFind<V> {
 		return node == null ? null : node.value;
 	}
 	
-	public void union(V v1, V v2) {
+	/**
+	 * @return v1 v2 原本不在同一个集合 合并成功 返回 true
+	 */
+	public boolean union(V v1, V v2) {
 		//判断 v1, v2有没有在map集合里面
 		Node<V> node1 = findNode(v1);
 		Node<V> node2 = findNode(v2);
-		if (node1 == null || node2 == null) return;
-		if (Objects.equals(node1.value, node2.value)) return;
+		if (node1 == null || node2 == null) return false;
+		if (Objects.equals(node1.value, node2.value)) return false;
 		
 		//合并 基于rank优化 把 高度 小的树 嫁接到 高度大的树上
 		if (node1.rank < node2.rank) {
@@ -58,6 +65,7 @@ public class GenericUnionFind<V> {
 			node2.parent = node1;
 			node1.rank++;
 		}
+		return true;
 	}
 
 	public boolean isSame(V v1, V v2) {
@@ -1,30 +1,152 @@
 package com.zbowen.graph;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class Graph<V, E> {
 	
 	protected WeightManager<E> weightManager;
 	
+	protected ShortestPathStrategy shortestPathStrategy = ShortestPathStrategy.DIJKSTRA; //单源最短路径 使用的算法
+	
+	protected double delta; //delta-stepping 桶的宽度 不大于 0 时 使用 最大权值 / 平均出度
+	
+	protected ForkJoinPool forkJoinPool = ForkJoinPool.commonPool(); //并行算法 使用的线程池
+	
+	protected MstStrategy mstStrategy = MstStrategy.AUTO; //最小生成树 使用的算法
+	
+	protected MstStrategy lastMstStrategy; //最近一次 mst() 实际使用的算法 不会是 AUTO
+	
+	protected AllPairsStrategy allPairsStrategy = AllPairsStrategy.FLOYD; //多源最短路径 使用的算法
+	
+	protected AllPairsPaths.Storage allPairsStorage = AllPairsPaths.Storage.HEAP; //多源最短路径 结果矩阵的存放位置
+	
 	public Graph() {}
 	
 	public Graph(WeightManager<E> weightManager) {
 		this.weightManager = weightManager;
 	}
 
+	public ShortestPathStrategy getShortestPathStrategy() {
+		return shortestPathStrategy;
+	}
+
+	public void setShortestPathStrategy(ShortestPathStrategy shortestPathStrategy) {
+		this.shortestPathStrategy = shortestPathStrategy;
+	}
+
+	public double getDelta() {
+		return delta;
+	}
+
+	public void setDelta(double delta) {
+		this.delta = delta;
+	}
+
+	public ForkJoinPool getForkJoinPool() {
+		return forkJoinPool;
+	}
+
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	public MstStrategy getMstStrategy() {
+		return mstStrategy;
+	}
+
+	public void setMstStrategy(MstStrategy mstStrategy) {
+		this.mstStrategy = mstStrategy;
+	}
+
+	public MstStrategy getLastMstStrategy() {
+		return lastMstStrategy;
+	}
+
+	public AllPairsStrategy getAllPairsStrategy() {
+		return allPairsStrategy;
+	}
+
+	public void setAllPairsStrategy(AllPairsStrategy allPairsStrategy) {
+		this.allPairsStrategy = allPairsStrategy;
+	}
+
+	public AllPairsPaths.Storage getAllPairsStorage() {
+		return allPairsStorage;
+	}
+
+	public void setAllPairsStorage(AllPairsPaths.Storage allPairsStorage) {
+		this.allPairsStorage = allPairsStorage;
+	}
+
 	public abstract List<V> topologicalSortBfs(); //拓扑排序 广度优先
 	
 	public abstract List<V> topologicalSortDfs(); //拓扑排序 深度优先
 	
-	public abstract Set<EdgeInfo<V, E>> mst(); //最小生成树
+	/**
+	 * 按层 并行拓扑排序 每一层为 同时入度减到0 的顶点 同一层的顶点之间 没有依赖
+	 * 层内顺序不固定 存在环时抛出异常
+	 * 默认按层 顺序执行 Kahn 算法
+	 */
+	public List<List<V>> topologicalLayers() {
+		Map<V, Integer> ins = inDegrees();
+		List<List<V>> layers = new ArrayList<>();
+		List<V> layer = new ArrayList<>();
+		for (Map.Entry<V, Integer> entry : ins.entrySet()) {
+			if (entry.getValue() == 0) layer.add(entry.getKey());
+		}
+		int count = 0;
+		while (!layer.isEmpty()) {
+			layers.add(layer);
+			count += layer.size();
+			List<V> next = new ArrayList<>();
+			for (V v : layer) {
+				for (V to : successors(v)) {
+					if (ins.merge(to, -1, Integer::sum) == 0) next.add(to);
+				}
+			}
+			layer = next;
+		}
+		if (count != ins.size()) throw new RuntimeException("图中存在环或者没有方向，无法进行拓扑排序！");
+		return layers;
+	}
+	
+	public abstract Set<EdgeInfo<V, E>> mst(); //最小生成树 图不连通时 得到最小生成森林
 	
 	public abstract Map<V, PathInfo<V, E>> shortestPath(V begin); //单源最短路径
 	
 	public abstract Map<V, Map<V, PathInfo<V, E>>> shortestPath(); //多源最短路径
 	
+	/**
+	 * 点到点最短路径 到达不了(或 from == to)返回 null
+	 * 默认计算整棵最短路径树 子类可以只搜索需要的部分
+	 */
+	public PathInfo<V, E> shortestPath(V from, V to) {
+		return shortestPath(from).get(to);
+	}
+	
+	/**
+	 * A* 点到点最短路径 heuristic 估计 顶点到 to 的剩余权值 不能高估(可采纳)
+	 * 默认忽略 heuristic 直接使用 shortestPath(from, to)
+	 */
+	public PathInfo<V, E> aStar(V from, V to, Heuristic<V, E> heuristic) {
+		return shortestPath(from, to);
+	}
+	
 	abstract int verticesSize(); //顶点数量
 	
 	abstract int edgesSize(); //边的数量
@@ -39,31 +161,258 @@ public abstract class Graph<V, E> {
 	
 	abstract void removeEdge(V fromV, V toV); //删除一条边
 	
+	abstract Collection<V> vertexValues(); //所有顶点的值
+	
+	abstract Collection<V> successors(V v); //v 的出边指向的顶点 v 不存在时返回 null
+	
 	public abstract void bfs(V begin, VertexVisitor<V> visitor); //广度优先遍历 利用队列
 	
 	public abstract void dfs(V begin, VertexVisitor<V> visitor); //深度优先遍历 利用栈 迭代
 	
+	/**
+	 * 按层 并行广度优先遍历 每一层内 顶点的访问顺序不固定
+	 * visitor 只在调用者的线程中调用 返回 true 时结束遍历 默认使用 bfs
+	 * 一层的顶点 在整层展开之后 才交给 visitor 返回 true 时 这一层的展开 不会提前停止
+	 */
+	public void parallelBfs(V begin, VertexVisitor<V> visitor) {
+		bfs(begin, visitor);
+	}
+	
 	public abstract void dfsRecursive(V value, VertexVisitor<V> visitor); //深度优先遍历 递归
 	
+	/**
+	 * 广度优先遍历 的 Stream 顶点在被取出时才访问 limit / findFirst 等操作可以提前结束遍历
+	 * 默认通过 successors 遍历 子类可以使用自己的结构 取完之前 不能修改图
+	 */
+	public Stream<V> bfsStream(V begin) {
+		Collection<V> successors = successors(begin);
+		if (successors == null) return Stream.empty();
+		return StreamSupport.stream(new BfsSpliterator(begin), false);
+	}
+	
+	/**
+	 * 深度优先遍历(前序) 的 Stream 顶点在被取出时才访问
+	 */
+	public Stream<V> dfsStream(V begin) {
+		Collection<V> successors = successors(begin);
+		if (successors == null) return Stream.empty();
+		return StreamSupport.stream(new DfsSpliterator(begin), false);
+	}
+	
+	/**
+	 * 拓扑排序(广度优先) 的 Stream 存在环时 在取完能排序的顶点之后抛出异常
+	 */
+	public Stream<V> topologicalStream() {
+		return StreamSupport.stream(new TopologicalSpliterator(), false);
+	}
+	
+	/**
+	 * 所有顶点的入度
+	 */
+	private Map<V, Integer> inDegrees() {
+		Map<V, Integer> ins = new HashMap<>();
+		for (V v : vertexValues()) {
+			ins.putIfAbsent(v, 0);
+			for (V to : successors(v)) {
+				ins.merge(to, 1, Integer::sum);
+			}
+		}
+		return ins;
+	}
+	
+	private class BfsSpliterator extends Spliterators.AbstractSpliterator<V> {
+		private final Set<V> visited = new HashSet<>();
+		private final Deque<V> queue = new ArrayDeque<>();
+		
+		BfsSpliterator(V begin) {
+			super(verticesSize(), ORDERED | DISTINCT);
+			queue.offer(begin);
+			visited.add(begin);
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action) {
+			if (queue.isEmpty()) return false;
+			V poll = queue.poll();
+			for (V to : successors(poll)) {
+				if (visited.add(to)) queue.offer(to);
+			}
+			action.accept(poll);
+			return true;
+		}
+	}
+	
+	private class DfsSpliterator extends Spliterators.AbstractSpliterator<V> {
+		private final Set<V> visited = new HashSet<>();
+		private final Deque<Iterator<V>> stack = new ArrayDeque<>();
+		private V begin; //还没有取出的 起点
+		private boolean started;
+		
+		DfsSpliterator(V begin) {
+			super(verticesSize(), ORDERED | DISTINCT);
+			this.begin = begin;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action) {
+			V next = null;
+			boolean found = false;
+			if (!started) {
+				started = true;
+				next = begin;
+				found = true;
+			}
+			while (!found && !stack.isEmpty()) {
+				Iterator<V> iterator = stack.peek();
+				if (!iterator.hasNext()) {
+					stack.pop();
+					continue;
+				}
+				V to = iterator.next();
+				if (!visited.contains(to)) {
+					next = to;
+					found = true;
+				}
+			}
+			if (!found) return false;
+			visited.add(next);
+			stack.push(successors(next).iterator());
+			action.accept(next);
+			return true;
+		}
+	}
+	
+	private class TopologicalSpliterator extends Spliterators.AbstractSpliterator<V> {
+		private Map<V, Integer> ins; //第一次取出时 才计算入度
+		private final Deque<V> queue = new ArrayDeque<>();
+		private int count;
+		
+		TopologicalSpliterator() {
+			super(verticesSize(), ORDERED | DISTINCT);
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action) {
+			if (ins == null) {
+				ins = inDegrees();
+				ins.forEach((V v, Integer in) -> {
+					if (in == 0) queue.offer(v);
+				});
+			}
+			if (queue.isEmpty()) {
+				//判断 这个图是否存在 环  拓扑排序 只能应用于 有向无环图 DAG
+				if (count != ins.size()) throw new RuntimeException("图中存在环或者没有方向，无法进行拓扑排序！");
+				return false;
+			}
+			V poll = queue.poll();
+			count++;
+			for (V to : successors(poll)) {
+				if (ins.merge(to, -1, Integer::sum) == 0) queue.offer(to);
+			}
+			action.accept(poll);
+			return true;
+		}
+	}
+	
+	/**
+	 * 单源最短路径 shortestPath(begin) 使用的算法
+	 */
+	public enum ShortestPathStrategy {
+		DIJKSTRA, //不支持负权边
+		BELLMAN_FORD, //支持负权边 存在负权环时抛出 NegativeCycleException
+		SPFA, //队列优化的 BELLMAN_FORD
+		DELTA_STEPPING //并行 不支持负权边 需要 DoubleWeightManager / LongWeightManager 否则使用 DIJKSTRA
+	}
+	
+	/**
+	 * 最小生成树 mst() 使用的算法 CsrGraph 总是使用 PRIM
+	 */
+	public enum MstStrategy {
+		AUTO, //根据 顶点数量 边的密度 是否连通 选择下面的一种
+		PRIM,
+		KRUSKAL,
+		FILTER_KRUSKAL, //按照 pivot 划分边 先处理轻的一半 重的一半 过滤掉已经连通的边之后 再继续划分
+		BORUVKA //每一轮 并行地为每个连通分量 找到权值最小的出边 然后合并 图不连通时 得到最小生成森林
+	}
+	
+	/**
+	 * 多源最短路径 shortestPath() 使用的算法
+	 */
+	public enum AllPairsStrategy {
+		FLOYD, //O(V^3) 适合稠密图
+		JOHNSON //一次 bellmanFord 重新赋权 + 每个顶点一次 dijkstra 适合有负权边的稀疏图 需要 DoubleWeightManager / LongWeightManager 否则使用 FLOYD
+	}
+	
 	public interface WeightManager<E> {
 		int compare(E w1, E w2);
 		E add(E w1, E w2);
 		E zero();
 	}
-	
+
+	/**
+	 * double 权值 图的算法识别到它时会走 double[] 的特化版本 松弛过程不装箱
+	 */
+	public static class DoubleWeightManager implements WeightManager<Double> {
+		public int compare(Double w1, Double w2) {
+			return Double.compare(w1, w2);
+		}
+
+		public Double add(Double w1, Double w2) {
+			return w1 + w2;
+		}
+
+		public Double zero() {
+			return 0.0;
+		}
+	}
+
+	/**
+	 * long 权值 图的算法识别到它时会走 long[] 的特化版本 松弛过程不装箱
+	 */
+	public static class LongWeightManager implements WeightManager<Long> {
+		public int compare(Long w1, Long w2) {
+			return Long.compare(w1, w2);
+		}
+
+		public Long add(Long w1, Long w2) {
+			return w1 + w2;
+		}
+
+		public Long zero() {
+			return 0L;
+		}
+	}
+
+	/**
+	 * A* 的启发函数 返回 v 到 target 的估计权值
+	 */
+	public interface Heuristic<V, E> {
+		E estimate(V v, V target);
+	}
+
 	public interface VertexVisitor<V> {
 		boolean visit(V v);
 	}
 	
 	public static class PathInfo<V, E> {
 		protected E weight; //总权值
-		//路径 信息
-		protected List<EdgeInfo<V, E>> edgeInfos = new LinkedList<>();
+		//路径 信息 延迟还原的子类 在 getEdgeInfos() 之前为 null 只能通过 getEdgeInfos() 读取
+		private List<EdgeInfo<V, E>> edgeInfos;
 		
-		public PathInfo() {}
+		public PathInfo() {
+			this.edgeInfos = new LinkedList<>();
+		}
 		
 		public PathInfo(E weight) {
+			this(weight, new LinkedList<>());
+		}
+		
+		/**
+		 * edgeInfos 可以为 null 由子类在 getEdgeInfos() 时再生成
+		 */
+		protected PathInfo(E weight, List<EdgeInfo<V, E>> edgeInfos) {
 			this.weight = weight;
+			this.edgeInfos = edgeInfos;
 		}
 
 		public E getWeight() {
@@ -0,0 +1,36 @@
+package com.zbowen.graph;
+
+import java.util.Arrays;
+
+/**
+ * 可以扩容的 int 数组 避免 List<Integer> 装箱
+ * @author zbowen
+ *
+ */
+final class IntList {
+	private int[] elements = new int[8];
+	private int size;
+
+	void add(int element) {
+		if (size == elements.length) {
+			elements = Arrays.copyOf(elements, size << 1);
+		}
+		elements[size++] = element;
+	}
+
+	int get(int index) {
+		return elements[index];
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(elements, size);
+	}
+}
@@ -1,7 +1,13 @@
 package com.zbowen.graph;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -15,20 +21,139 @@ import com.zbowen.graph.Graph.PathInfo;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
-import java.util.Stack;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @SuppressWarnings("all")
 public class ListGraph<V, E> extends Graph<V, E> {
 
+	private static final int FILTER_KRUSKAL_THRESHOLD = 1 << 10; //filterKruskal 中 直接排序的 边的数量
+	private static final int BORUVKA_THRESHOLD = 1 << 12; //boruvka 中 一个任务 最少处理的 边的数量
+	private static final int PARALLEL_MST_EDGES = 1 << 16; //MstStrategy.AUTO 时 边的数量达到它 才考虑 并行的 boruvka
+	
 	Map<V, Vertex<V, E>> vertices = new HashMap<>(); //用来存储 顶点
+	List<Vertex<V, E>> vertexList = new ArrayList<>(); //按照 顶点的 index 存储顶点
 	Set<Edge<V, E>> edges = new HashSet<>(); //用来存储边
 	Comparator<Edge<V, E>> edgeComparator = (Edge<V, E> e1, Edge<V, E> e2) -> {
 		return weightManager.compare(e1.weight, e2.weight);
 	};
 	
+	private boolean mstMaintained; //是否维护 最小生成树
+	private MaintainedMst maintainedMst; //维护的最小生成树 为 null 时 在下一次 mst() 时计算
+	
+	private boolean componentsTracked; //是否维护 连通分量
+	private GenericUnionFind<V> components; //维护的连通分量 为 null 时 在下一次查询时计算
+	private int componentCount; //components 中 连通分量的数量
+	
+	private TopologicalOrder topologicalOrder; //维护的拓扑序 为 null 时 不维护
+	
+	private CsrGraph<V, E> csr; //缓存的 CSR 快照 修改图时 置为 null
+	
 	public ListGraph(WeightManager<E> weightManager) {
 		super(weightManager);
 	}
+	
+	public boolean isMstMaintained() {
+		return mstMaintained;
+	}
+	
+	/**
+	 * 开启后 第一次 mst() 计算出的 最小生成森林 会在 addEdge / removeEdge 时增量更新
+	 * 之后的 mst() 直接返回它 不再重新计算 removeVertex 后会重新计算
+	 */
+	public void setMstMaintained(boolean mstMaintained) {
+		this.mstMaintained = mstMaintained;
+		if (!mstMaintained) maintainedMst = null;
+	}
+	
+	public boolean isComponentsTracked() {
+		return componentsTracked;
+	}
+	
+	/**
+	 * 开启后 第一次查询 计算出的 连通分量 会在 addVertex / addEdge 时合并
+	 * removeVertex / removeEdge 后 在下一次查询时 重新计算
+	 * 关闭时 每次查询都重新计算
+	 */
+	public void setComponentsTracked(boolean componentsTracked) {
+		this.componentsTracked = componentsTracked;
+		if (!componentsTracked) components = null;
+	}
+	
+	/**
+	 * 不考虑边的方向 u v 是否连通 顶点不存在返回 false
+	 */
+	public boolean connected(V u, V v) {
+		return components().isSame(u, v);
+	}
+	
+	/**
+	 * 不考虑边的方向 连通分量的数量
+	 */
+	public int componentCount() {
+		components();
+		return componentCount;
+	}
+	
+	/**
+	 * v 所在连通分量的 代表顶点 同一个连通分量中的顶点 返回同一个值 顶点不存在返回 null
+	 * 代表顶点 在之后 添加边 合并连通分量时 可能改变
+	 */
+	public V componentOf(V v) {
+		return components().find(v);
+	}
+	
+	public boolean isTopologicalMaintained() {
+		return topologicalOrder != null;
+	}
+	
+	/**
+	 * 开启时 立即计算一次拓扑序 存在环时抛出异常
+	 * 开启后 addEdge 只调整受影响的顶点 会形成环的边 直接抛出异常 不会被添加
+	 */
+	public void setTopologicalMaintained(boolean topologicalMaintained) {
+		topologicalOrder = topologicalMaintained ? new TopologicalOrder() : null;
+	}
+	
+	/**
+	 * 维护的拓扑序中 v 的排名 O(1) 排名小的顶点 排在前面 排名不一定连续
+	 * 没有开启 setTopologicalMaintained 或者 顶点不存在 返回 -1
+	 */
+	public int topologicalRank(V v) {
+		Vertex<V, E> vertex = vertices.get(v);
+		if (topologicalOrder == null || vertex == null) return -1;
+		return topologicalOrder.ranks[vertex.index];
+	}
+	
+	/**
+	 * 维护的拓扑序 没有开启 setTopologicalMaintained 时 使用 topologicalSortBfs
+	 */
+	public List<V> topologicalOrder() {
+		if (topologicalOrder == null) return topologicalSortBfs();
+		return topologicalOrder.list();
+	}
+	
+	private GenericUnionFind<V> components() {
+		if (components != null) return components;
+		GenericUnionFind<V> uf = new GenericUnionFind<>();
+		int count = 0;
+		for (Vertex<V, E> vertex : vertexList) {
+			uf.makeSet(vertex.value);
+			count++;
+		}
+		for (Edge<V, E> edge : edges) {
+			if (uf.union(edge.from.value, edge.to.value)) count--;
+		}
+		componentCount = count;
+		if (componentsTracked) components = uf;
+		return uf;
+	}
 
 	
 	@Override
@@ -44,7 +169,21 @@ public class ListGraph<V, E> extends Graph<V, E> {
 	@Override
 	public void addVertex(V v) {
 		if (vertices.containsKey(v)) return;
-		vertices.put(v, new Vertex<>(v));
+		newVertex(v);
+	}
+	
+	/**
+	 * 创建顶点 并为其分配 index
+	 */
+	private Vertex<V, E> newVertex(V v) {
+		Vertex<V, E> vertex = new Vertex<>(v);
+		vertex.index = vertexList.size();
+		vertexList.add(vertex);
+		vertices.put(v, vertex);
+		csr = null;
+		if (components != null && components.makeSet(v)) componentCount++;
+		if (topologicalOrder != null) topologicalOrder.add(vertex);
+		return vertex;
 	}
 
 	@Override
@@ -56,15 +195,32 @@ public class ListGraph<V, E> extends Graph<V, E> {
 		
 		Iterator<Edge<V, E>> inIterator = vertex.inEdges.iterator();
 		while (inIterator.hasNext()) {
-			edges.remove(inIterator.next());
+			Edge<V, E> edge = inIterator.next();
+			edge.from.outEdges.remove(edge);
+			edges.remove(edge);
 			inIterator.remove();
 		}
 		
 		Iterator<Edge<V, E>> iterator = vertex.outEdges.iterator();
 		while (iterator.hasNext()) {
-			edges.remove(iterator.next());
+			Edge<V, E> edge = iterator.next();
+			edge.to.inEdges.remove(edge);
+			edges.remove(edge);
 			iterator.remove();
 		}
+		
+		//维护的最小生成树 连通分量 在下一次使用时重新计算
+		maintainedMst = null;
+		components = null;
+		csr = null;
+		//最后一个顶点 移到 被删除顶点的位置 保持 index 连续
+		vertices.remove(v);
+		if (topologicalOrder != null) topologicalOrder.remove(vertex);
+		Vertex<V, E> last = vertexList.remove(vertexList.size() - 1);
+		if (last != vertex) {
+			last.index = vertex.index;
+			vertexList.set(vertex.index, last);
+		}
 	}
 
 	@Override
@@ -76,28 +232,48 @@ public class ListGraph<V, E> extends Graph<V, E> {
 	public void addEdge(V fromV, V toV, E weight) {
 		Vertex<V, E> from = vertices.get(fromV);
 		
+		//维护拓扑序时 新顶点 没有边 只有自环 会形成环 在添加顶点之前抛出异常 图保持不变
+		//两个顶点都已经存在时 insert 抛出异常 也不会留下新的顶点
+		if (topologicalOrder != null && Objects.equals(fromV, toV) && from == null) {
+			throw new RuntimeException("添加边 " + fromV + " -> " + toV + " 会形成环！");
+		}
+		
 		//如果顶点不存在就添加
 		if (from == null) {
-			from = new Vertex<>(fromV);
-			vertices.put(fromV, from);
+			from = newVertex(fromV);
 		}
 		
 		Vertex<V, E> to = vertices.get(toV);
 		
 		//如果顶点不存在就添加
 		if (to == null) {
-			to = new Vertex<>(toV);
-			vertices.put(toV, to);
+			to = newVertex(toV);
 		}
 		
 		Edge<V, E> edge = new Edge<>(from, to);
 		edge.weight = weight;
 		
-		if(edges.contains(edge)) removeEdge(fromV, toV);
+		//先调整拓扑序 会形成环时 抛出异常 边没有被添加
+		if (topologicalOrder != null && !edges.contains(edge)) topologicalOrder.insert(from, to);
+		
+		//已经存在的边 相当于修改权值
+		boolean reweight = edges.remove(edge);
+		if (reweight) {
+			from.outEdges.remove(edge);
+			to.inEdges.remove(edge);
+		}
 		
 		from.outEdges.add(edge);
 		to.inEdges.add(edge);
 		edges.add(edge);
+		csr = null;
+		if (components != null && components.union(fromV, toV)) componentCount--;
+		if (maintainedMst == null) return;
+		if (reweight) {
+			maintainedMst.reweight(edge);
+		} else {
+			maintainedMst.insert(edge);
+		}
 	}
 
 	@Override
@@ -109,13 +285,33 @@ public class ListGraph<V, E> extends Graph<V, E> {
 		if (edges.remove(edge)) {
 			from.outEdges.remove(edge);
 			to.inEdges.remove(edge);
+			if (maintainedMst != null) maintainedMst.delete(edge);
+			components = null;
+			csr = null;
 		}
 		
 	}
 	
+	@Override
+	Collection<V> vertexValues() {
+		return vertices.keySet();
+	}
+	
+	@Override
+	Collection<V> successors(V v) {
+		Vertex<V, E> vertex = vertices.get(v);
+		if (vertex == null) return null;
+		List<V> list = new ArrayList<>(vertex.outEdges.size());
+		for (Edge<V, E> edge : vertex.outEdges) {
+			list.add(edge.to.value);
+		}
+		return list;
+	}
+	
 	//顶点类
 	private static class Vertex<V, E> {
 		V value;
+		int index; //顶点在 vertexList 中的位置 用于 数组 / 索引堆
 		Set<Edge<V, E>> inEdges = new HashSet<>();
 		Set<Edge<V, E>> outEdges = new HashSet<>();
 		
@@ -184,151 +380,187 @@ public class ListGraph<V, E> extends Graph<V, E> {
 	 *  广度优先算法 拓扑排序
 	 */
 	public List<V> topologicalSortBfs() {
+		int size = vertexList.size();
 		//先搞一个list集合来存放 排好序的 元素
-		List<V> list = new ArrayList<>(); 
-		//再整一个队列来 存放 入度为0 的顶点 入度为0就意味着它没有指向任何顶点，不用依赖任何顶点
-		Queue<Vertex<V, E>> queue = new LinkedList<>();
-		//搞个map集合来存放入度不为0的顶点 key为顶点对象 value为入度数量
-		Map<Vertex<V, E>, Integer> map = new HashMap<>();
-		//遍历一下 全部 顶点 先把 入度 为 0 的顶点入队，把入度不为0顶点添加到map里面
-		vertices.forEach((V key, Vertex<V, E> vertex)->{
-			int inSize = vertex.inEdges.size();
-			if (inSize == 0) {
-				queue.offer(vertex);
-			}else {
-				map.put(vertex, inSize);
+		List<V> list = new ArrayList<>(size);
+		TraversalContext context = TraversalContext.acquire(size);
+		try {
+			//入度表 以及 用数组实现的队列 存放 入度为0 的顶点 入度为0就意味着它不用依赖任何顶点
+			int[] ins = context.counts;
+			int[] queue = context.vertices;
+			int head = 0;
+			int tail = 0;
+			for (int i = 0; i < size; i++) {
+				ins[i] = vertexList.get(i).inEdges.size();
+				if (ins[i] == 0) queue[tail++] = i;
 			}
-		});
-		
-		//遍历队列
-		while (!queue.isEmpty()) {
-			Vertex<V,E> poll = queue.poll();
-			//将出队顶点的值添加到list集合中
-			list.add(poll.value);
-			//改变 该顶点 出度 边指向顶点的 入度
-			poll.outEdges.forEach((Edge<V, E> edge)->{
-				int inSize = map.get(edge.to) - 1;
-				if (inSize == 0) {
-					queue.offer(edge.to);
-				}else {
-					map.put(edge.to, inSize);
+			
+			//遍历队列
+			while (head < tail) {
+				Vertex<V, E> poll = vertexList.get(queue[head++]);
+				//将出队顶点的值添加到list集合中
+				list.add(poll.value);
+				//改变 该顶点 出度 边指向顶点的 入度
+				for (Edge<V, E> edge : poll.outEdges) {
+					if (--ins[edge.to.index] == 0) queue[tail++] = edge.to.index;
 				}
-			});
+			}
+		} finally {
+			context.release();
 		}
 		
 		//判断 这个图是否存在 环  拓扑排序 只能应用于 有向无环图 DAG
-		if (list.size() != vertices.size()) {
+		if (list.size() != size) {
 			throw new RuntimeException("图中存在环或者没有方向，无法进行拓扑排序！");
 		}
 		return list;
 	}
 	
 	
+	@Override
+	public List<List<V>> topologicalLayers() {
+		int size = vertexList.size();
+		int[] degrees = new int[size];
+		for (int i = 0; i < size; i++) {
+			degrees[i] = vertexList.get(i).inEdges.size();
+		}
+		//只读地遍历 outEdges 多个线程同时遍历是安全的
+		List<int[]> layers = ParallelKahn.run(degrees, (int vertex, IntConsumer action) -> {
+			for (Edge<V, E> edge : vertexList.get(vertex).outEdges) {
+				action.accept(edge.to.index);
+			}
+		}, forkJoinPool);
+		List<List<V>> list = new ArrayList<>(layers.size());
+		int count = 0;
+		for (int[] layer : layers) {
+			List<V> values = new ArrayList<>(layer.length);
+			for (int vertex : layer) {
+				values.add(vertexList.get(vertex).value);
+			}
+			list.add(values);
+			count += layer.length;
+		}
+		if (count != size) {
+			throw new RuntimeException("图中存在环或者没有方向，无法进行拓扑排序！");
+		}
+		return list;
+	}
+	
 	/**
 	 * 深度优先 拓扑排序
 	 * @return
 	 */
 	public List<V> topologicalSortDfs() {
+		int size = vertexList.size();
 		//用来 存放 排序后的值
 		LinkedList<V> list = new LinkedList<>();
-		//用来存放已经访问过的顶点
-		Set<Vertex<V, E>> set = new HashSet<>();
-		//辅助栈 用来存放遍历到的顶点
-		Stack<Vertex<V, E>> stack = new Stack<>();
-		//遍历map中全部的顶点
-		vertices.forEach((V key, Vertex<V, E> vertex)->{
-			//如果这个顶点已经被访问过 就跳过 这里的 return 等价于 continue
-			if (set.contains(vertex)) return;
-			//将遍历到的顶点添加到栈中
-			stack.push(vertex);
-			//将遍历到的顶点添加到set集合中标识 代表该顶点已经被访问
-			set.add(vertex);
-			//遍历栈
-			while(!stack.isEmpty()) {
-				//弹出栈顶元素
-				Vertex<V,E> pop = stack.pop();
-				//判断栈顶元素的初度是否为0 为零就直接添加到目标集合的首位
-				if(pop.outEdges.size() == 0) {
-					list.addFirst(pop.value); 
-					//跳过后面的操作
-					continue;
-				}
-				//声明一个标识 变量
-				boolean flag = false;
-				//遍历 栈顶  顶点 指向顶点
-				for (Edge<V, E> edge : pop.outEdges) {
-					//如果该顶点已经访问了 就跳过该顶点 继续下一个顶点
-					if (set.contains(edge.to)) {
-						//如果执行了下面代码跳出了循环 就代表以pop为出发点的顶点出发的顶点
-						//全部已经访问完 所以 标识pop顶点能添加到目标 集合里面去
-						flag = true; 
+		TraversalContext context = TraversalContext.acquire(size);
+		try {
+			//用来存放已经访问过的顶点
+			BitSet visited = context.visited;
+			//辅助栈 用来存放遍历到的顶点
+			int[] stack = context.vertices;
+			//遍历全部的顶点
+			for (int begin = 0; begin < size; begin++) {
+				//如果这个顶点已经被访问过 就跳过
+				if (visited.get(begin)) continue;
+				int top = 0;
+				stack[top++] = begin;
+				visited.set(begin);
+				while (top > 0) {
+					//弹出栈顶元素
+					Vertex<V, E> pop = vertexList.get(stack[--top]);
+					//找到 栈顶 顶点 第一个没有访问过的 指向顶点
+					Vertex<V, E> next = null;
+					for (Edge<V, E> edge : pop.outEdges) {
+						if (visited.get(edge.to.index)) continue;
+						next = edge.to;
+						break;
+					}
+					//指向的顶点 全部已经访问完 pop 添加到目标集合的首位置
+					if (next == null) {
+						list.addFirst(pop.value);
 						continue;
 					}
-					//如果能够执行这下面的代码 代表以该顶点为出发点的顶点还没有访问完
-					//所以 标识栈顶 的顶点不能添加到目标 集合里面去
-					flag = false; 
-					//将 出发点 添加到栈中
-					stack.push(pop);
-					//将 终点 添加到栈中
-					stack.push(edge.to);
-					//将终点 添加到set集合中 标识 已经访问
-					set.add(edge.to);
-					break;
+					//出发点 和 终点 都添加到栈中 终点标识 已经访问
+					stack[top++] = pop.index;
+					stack[top++] = next.index;
+					visited.set(next.index);
 				}
-				//将 pop 添加到目标集合的首位置
-				if(flag) list.addFirst(pop.value);
 			}
-			
-		});
+		} finally {
+			context.release();
+		}
 		return list;
 	}
 	
 	
 	/**
-	 * 广度优先遍历 利用队列
+	 * 广度优先遍历 利用数组实现的队列
 	 * @param vertex
 	 */
 	public void bfs(V value, VertexVisitor<V> visitor) {
 		Vertex<V, E> vertex = vertices.get(value);
 		if (vertex == null) return;
-		Set<Vertex<V, E>> set = new HashSet<>();
-		Queue<Vertex<V, E>> queue = new LinkedList<>();
-		queue.offer(vertex);
-		set.add(vertex);
-		while (!queue.isEmpty()) {
-			Vertex<V, E> poll = queue.poll();
-			if (visitor.visit(poll.value)) return;
-			for (Edge<V, E> edge : poll.outEdges) {
-				if (!set.contains(edge.to)) {
-					queue.offer(edge.to);
-					set.add(edge.to);
+		TraversalContext context = TraversalContext.acquire(vertexList.size());
+		try {
+			BitSet visited = context.visited;
+			int[] queue = context.vertices;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = vertex.index;
+			visited.set(vertex.index);
+			while (head < tail) {
+				Vertex<V, E> poll = vertexList.get(queue[head++]);
+				if (visitor.visit(poll.value)) return;
+				for (Edge<V, E> edge : poll.outEdges) {
+					if (visited.get(edge.to.index)) continue;
+					queue[tail++] = edge.to.index;
+					visited.set(edge.to.index);
 				}
 			}
+		} finally {
+			context.release();
 		}
 	}
 	
 	/**
-	 * 深度优先遍历 利用栈 迭代
+	 * 在 CSR 快照上 按层 并行广度优先遍历 图没有修改时 快照会重复使用
+	 * @param vertex
+	 */
+	public void parallelBfs(V value, VertexVisitor<V> visitor) {
+		if (!vertices.containsKey(value)) return;
+		csr().parallelBfs(value, visitor);
+	}
+	
+	/**
+	 * 深度优先遍历 利用数组实现的栈 迭代
 	 * @param vertex
 	 */
 	public void dfs(V value, VertexVisitor<V> visitor) {
 		Vertex<V, E> vertex = vertices.get(value);
 		if (vertex == null) return;
-		Set<Vertex<V, E>> set = new HashSet<>();
-		Stack<Vertex<V, E>> stack = new Stack<>();
-		stack.push(vertex);
-		set.add(vertex);
-		if (visitor.visit(vertex.value)) return;
-		while (!stack.isEmpty()) {
-			Vertex<V, E> pop = stack.pop();
-			for (Edge<V, E> edge : pop.outEdges) {
-				if (set.contains(edge.to)) continue;
-				stack.push(pop);
-				stack.push(edge.to);
-				set.add(edge.to);
-				if (visitor.visit(edge.to.value)) return;
-				break;
+		TraversalContext context = TraversalContext.acquire(vertexList.size());
+		try {
+			BitSet visited = context.visited;
+			int[] stack = context.vertices;
+			int top = 0;
+			stack[top++] = vertex.index;
+			visited.set(vertex.index);
+			if (visitor.visit(vertex.value)) return;
+			while (top > 0) {
+				Vertex<V, E> pop = vertexList.get(stack[--top]);
+				for (Edge<V, E> edge : pop.outEdges) {
+					if (visited.get(edge.to.index)) continue;
+					stack[top++] = pop.index;
+					stack[top++] = edge.to.index;
+					visited.set(edge.to.index);
+					if (visitor.visit(edge.to.value)) return;
+					break;
+				}
 			}
+		} finally {
+			context.release();
 		}
 	}
 	
@@ -339,47 +571,234 @@ public class ListGraph<V, E> extends Graph<V, E> {
 	public void dfsRecursive(V value, VertexVisitor<V> visitor) {
 		Vertex<V, E> vertex = vertices.get(value);
 		if (vertex == null) return;
-		dfs(vertex, new HashSet<>(), visitor);
+		TraversalContext context = TraversalContext.acquire(vertexList.size());
+		try {
+			dfs(vertex, context.visited, visitor);
+		} finally {
+			context.release();
+		}
 	}
 	
-	private void dfs(Vertex<V, E> vertex, Set<Vertex<V, E>> visitVertices, VertexVisitor<V> visitor) {
+	/**
+	 * @return visitor 是否要求结束遍历
+	 */
+	private boolean dfs(Vertex<V, E> vertex, BitSet visited, VertexVisitor<V> visitor) {
 		//直接打印 开始顶点
-		if(visitor.visit(vertex.value)) return;
-		//把遍历过的 顶点 添加到 visitVertices 集合中
-		visitVertices.add(vertex);
+		if(visitor.visit(vertex.value)) return true;
+		//把遍历过的 顶点 添加到 visited 中
+		visited.set(vertex.index);
 		for (Edge<V, E> edge : vertex.outEdges) {
-			if (visitVertices.contains(edge.to)) continue;
-			dfs(edge.to, visitVertices, visitor);
+			if (visited.get(edge.to.index)) continue;
+			if (dfs(edge.to, visited, visitor)) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * 广度优先遍历 的 Stream 取出一个顶点时 才把它的 outEdges 加入队列
+	 * 取完之前 不能修改图
+	 */
+	@Override
+	public Stream<V> bfsStream(V value) {
+		Vertex<V, E> vertex = vertices.get(value);
+		if (vertex == null) return Stream.empty();
+		return StreamSupport.stream(new BfsSpliterator(vertex), false);
+	}
+	
+	/**
+	 * 深度优先遍历 的 Stream 栈中保存 每个顶点 outEdges 的迭代器
+	 * 取完之前 不能修改图
+	 */
+	@Override
+	public Stream<V> dfsStream(V value) {
+		Vertex<V, E> vertex = vertices.get(value);
+		if (vertex == null) return Stream.empty();
+		return StreamSupport.stream(new DfsSpliterator(vertex), false);
+	}
+	
+	/**
+	 * 拓扑排序 的 Stream 创建时计算入度 取出一个顶点时 才减少它指向顶点的入度
+	 * 取完之前 不能修改图
+	 */
+	@Override
+	public Stream<V> topologicalStream() {
+		return StreamSupport.stream(new TopologicalSpliterator(), false);
+	}
+	
+	private class BfsSpliterator extends Spliterators.AbstractSpliterator<V> {
+		private final BitSet visited = new BitSet(vertexList.size());
+		private final int[] queue = new int[vertexList.size()];
+		private int head;
+		private int tail;
+		
+		BfsSpliterator(Vertex<V, E> vertex) {
+			super(vertexList.size(), ORDERED | DISTINCT);
+			queue[tail++] = vertex.index;
+			visited.set(vertex.index);
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action) {
+			if (head == tail) return false;
+			Vertex<V, E> poll = vertexList.get(queue[head++]);
+			for (Edge<V, E> edge : poll.outEdges) {
+				if (visited.get(edge.to.index)) continue;
+				queue[tail++] = edge.to.index;
+				visited.set(edge.to.index);
+			}
+			action.accept(poll.value);
+			return true;
+		}
+	}
+	
+	private class DfsSpliterator extends Spliterators.AbstractSpliterator<V> {
+		private final BitSet visited = new BitSet(vertexList.size());
+		private final Deque<Iterator<Edge<V, E>>> stack = new ArrayDeque<>();
+		private Vertex<V, E> begin; //还没有取出的 起点
+		
+		DfsSpliterator(Vertex<V, E> vertex) {
+			super(vertexList.size(), ORDERED | DISTINCT);
+			begin = vertex;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action) {
+			Vertex<V, E> next = begin;
+			begin = null;
+			while (next == null && !stack.isEmpty()) {
+				Iterator<Edge<V, E>> iterator = stack.peek();
+				if (!iterator.hasNext()) {
+					stack.pop();
+					continue;
+				}
+				Vertex<V, E> to = iterator.next().to;
+				if (!visited.get(to.index)) next = to;
+			}
+			if (next == null) return false;
+			visited.set(next.index);
+			stack.push(next.outEdges.iterator());
+			action.accept(next.value);
+			return true;
+		}
+	}
+	
+	private class TopologicalSpliterator extends Spliterators.AbstractSpliterator<V> {
+		private final int size = vertexList.size();
+		private final int[] ins = new int[size];
+		private final int[] queue = new int[size];
+		private int head;
+		private int tail;
+		
+		TopologicalSpliterator() {
+			super(vertexList.size(), ORDERED | DISTINCT);
+			for (int i = 0; i < size; i++) {
+				ins[i] = vertexList.get(i).inEdges.size();
+				if (ins[i] == 0) queue[tail++] = i;
+			}
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super V> action) {
+			if (head == tail) {
+				//判断 这个图是否存在 环  拓扑排序 只能应用于 有向无环图 DAG
+				if (tail != size) throw new RuntimeException("图中存在环或者没有方向，无法进行拓扑排序！");
+				return false;
+			}
+			Vertex<V, E> poll = vertexList.get(queue[head++]);
+			for (Edge<V, E> edge : poll.outEdges) {
+				if (--ins[edge.to.index] == 0) queue[tail++] = edge.to.index;
+			}
+			action.accept(poll.value);
+			return true;
+		}
+	}
+	
+	/**
+	 * MstStrategy.AUTO 的选择:
+	 * 1.连通 并且 稠密(边的数量 >= 顶点数量 * log2(顶点数量)) 使用 prim
+	 * 2.其余情况(prim 只能得到一个连通分量) 边多 并且 线程池可以并行 使用 boruvka 否则使用 filterKruskal
+	 */
+	private MstStrategy autoMstStrategy() {
+		int size = vertexList.size();
+		int edgesSize = edges.size();
+		if (connected() && edgesSize >= size * (32 - Integer.numberOfLeadingZeros(size))) return MstStrategy.PRIM;
+		if (edgesSize >= PARALLEL_MST_EDGES && forkJoinPool.getParallelism() > 1) return MstStrategy.BORUVKA;
+		return MstStrategy.FILTER_KRUSKAL;
+	}
+	
+	/**
+	 * 不考虑边的方向 图是否连通
+	 */
+	private boolean connected() {
+		if (this.components != null) return componentCount <= 1;
+		int components = vertexList.size();
+		UnionFind uf = new UnionFind(components);
+		for (Edge<V, E> edge : edges) {
+			if (components == 1) break;
+			if (uf.union(edge.from.index, edge.to.index)) components--;
 		}
+		return components <= 1;
 	}
 	
+	/**
+	 * 即时(eager) Prim 索引堆中 每个还没有连通的顶点 只保留一条 连向它的权值最小的边
+	 * 指向已经连通顶点的边 直接跳过 堆的大小不超过 顶点数量
+	 * 堆为空时 从下一个还没有连通的顶点 重新开始
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
 	private Set<EdgeInfo<V, E>> prim(){
 		//声明一个set集合用来储存 最小生成树的边
 		Set<EdgeInfo<V, E>> edgesInfo = new HashSet<>();
-		//再声明一个set集合用来储存 以及连通的顶点
-		Set<Vertex<V, E>> vertexes = new HashSet<>();
 		//选任意顶点 对其 outEdges进行第一次切分
 		Iterator<Vertex<V, E>> iterator = vertices.values().iterator();
 		//如果图没有顶点 直接return null
 		if (!iterator.hasNext()) return null;
-		//拿到 一个 顶点 发出的边  进行切分
 		Vertex<V, E> vertex = iterator.next();
-		vertexes.add(vertex);
-		
-		//搞个最小堆来 获得 被切分边中权值最小的一条边
-		MinHeap<Edge<V, E>> heap = new MinHeap<>(vertex.outEdges, edgeComparator);
-		while (!heap.isEmpty()) {
-			Edge<V, E> remove = heap.remove();
-			//如果发现这条边指向的顶点已经被访问就跳过
-			if (vertexes.contains(remove.to)) continue;
-			vertexes.add(remove.to);
-			edgesInfo.add(remove.edgeInfo());
-			//将 最小边指向 的 顶点 发出的所有边 都添加 到最小堆中   此处可以过滤已经添加过的边
-			heap.addAll(remove.to.outEdges);
+		int size = vertexList.size();
+		//已经连通的顶点
+		boolean[] selected = new boolean[size];
+		//index -> 连向这个顶点的 权值最小的边
+		Edge<V, E>[] minEdges = new Edge[size];
+		IndexedMinHeap<E> heap = new IndexedMinHeap<>(size, weightManager::compare);
+		//从还没有连通的顶点 重新开始 得到 最小生成森林
+		for (int next = 0; vertex != null; vertex = next < size ? vertexList.get(next++) : null) {
+			if (selected[vertex.index]) continue;
+			selected[vertex.index] = true;
+			relaxForPrim(vertex, selected, minEdges, heap);
+			while (!heap.isEmpty()) {
+				int index = heap.remove();
+				selected[index] = true;
+				edgesInfo.add(minEdges[index].edgeInfo());
+				relaxForPrim(vertexList.get(index), selected, minEdges, heap);
+			}
 		}
 		return edgesInfo;
 	}
 	
+	/**
+	 * 用 vertex 的 outEdges 更新 每个顶点的 最小边
+	 */
+	private void relaxForPrim(Vertex<V, E> vertex, boolean[] selected, Edge<V, E>[] minEdges, IndexedMinHeap<E> heap) {
+		relaxForPrim(vertex.outEdges, vertex, selected, minEdges, heap);
+		//和 kruskal 一样 不考虑边的方向
+		relaxForPrim(vertex.inEdges, vertex, selected, minEdges, heap);
+	}
+	
+	private void relaxForPrim(Set<Edge<V, E>> edges, Vertex<V, E> vertex, boolean[] selected, Edge<V, E>[] minEdges, IndexedMinHeap<E> heap) {
+		for (Edge<V, E> edge : edges) {
+			int to = edge.from == vertex ? edge.to.index : edge.from.index;
+			if (selected[to]) continue;
+			if (!heap.contains(to)) {
+				heap.add(to, edge.weight);
+			} else if (weightManager.compare(edge.weight, heap.getKey(to)) < 0) {
+				heap.decreaseKey(to, edge.weight);
+			} else {
+				continue;
+			}
+			minEdges[to] = edge;
+		}
+	}
+	
 	private Set<EdgeInfo<V, E>> kruskal(){
 		//声明一个set集合用来储存 最小生成树的边
 		Set<EdgeInfo<V, E>> edgesInfo = new HashSet<>();
@@ -395,8 +814,8 @@ public class ListGraph<V, E> extends Graph<V, E> {
 			uf.makeSet(vertex);
 		});
 		int size = verticesSize() - 1;
-		//最小生成树的边的数量 等于顶点 数量减一
-		while (edgesInfo.size() < size) {
+		//最小生成树的边的数量 等于顶点 数量减一 图不连通时 堆会先被取空
+		while (edgesInfo.size() < size && !heap.isEmpty()) {
 			Edge<V,E> remove = heap.remove();
 			boolean same = uf.isSame(remove.from, remove.to);
 			//如果 这两个顶点已经 在一个集合了 就不需要添加这条边 会构成环
@@ -407,118 +826,1168 @@ public class ListGraph<V, E> extends Graph<V, E> {
 		return edgesInfo;
 	}
 
-	@Override
-	public String toString() {
-		return "ListGraph [vertices=" + vertices + ", edges=" + edges + "]";
+	/**
+	 * Filter-Kruskal 边的数量不多于 FILTER_KRUSKAL_THRESHOLD 时 直接排序 然后 kruskal
+	 * 否则 按照 pivot 把边分成 轻 / 等于 / 重 三部分 先递归处理轻的部分
+	 * 重的部分 先过滤掉 两个顶点已经连通的边 再递归 大部分重边 不需要排序
+	 * forkJoinPool 有多个线程时 重的部分 在池中排序 同时在当前线程 递归处理轻的部分
+	 * 排好序之后 按顺序过滤 再 kruskal 只有 并查集的合并 是按顺序进行的
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Set<EdgeInfo<V, E>> filterKruskal() {
+		if (verticesSize() < 1) return null;
+		Set<EdgeInfo<V, E>> edgesInfo = new HashSet<>();
+		Edge<V, E>[] array = edges.toArray(new Edge[edges.size()]);
+		filterKruskal(array, 0, array.length, new UnionFind(vertexList.size()), edgesInfo);
+		return edgesInfo;
 	}
-
-
-	@Override
-	public Set<EdgeInfo<V, E>> mst() {
-		return Math.random() > 0.5 ? prim() : kruskal();
+	
+	private void filterKruskal(Edge<V, E>[] array, int begin, int end, UnionFind uf, Set<EdgeInfo<V, E>> edgesInfo) {
+		if (edgesInfo.size() == verticesSize() - 1) return;
+		if (end - begin <= FILTER_KRUSKAL_THRESHOLD) {
+			Arrays.sort(array, begin, end, edgeComparator);
+			kruskal(array, begin, end, uf, edgesInfo);
+			return;
+		}
+		//三数取中 作为 pivot
+		E pivot = median(array[begin].weight, array[(begin + end) >>> 1].weight, array[end - 1].weight);
+		//[begin, lt) 小于 pivot  [lt, i) 等于 pivot  [gt, end) 大于 pivot
+		int lt = begin;
+		int gt = end;
+		int i = begin;
+		while (i < gt) {
+			int cmp = weightManager.compare(array[i].weight, pivot);
+			if (cmp < 0) {
+				swap(array, lt++, i++);
+			} else if (cmp > 0) {
+				swap(array, i, --gt);
+			} else {
+				i++;
+			}
+		}
+		//重的部分 和 轻的部分 不重叠 可以同时排序
+		int heavy = gt;
+		ForkJoinTask<?> heavySort = null;
+		if (end - heavy > FILTER_KRUSKAL_THRESHOLD && forkJoinPool.getParallelism() > 1) {
+			heavySort = forkJoinPool.submit(() -> Arrays.sort(array, heavy, end, edgeComparator));
+		}
+		filterKruskal(array, begin, lt, uf, edgesInfo);
+		//权值相同的边 不需要排序
+		kruskal(array, lt, gt, uf, edgesInfo);
+		if (heavySort != null) heavySort.join();
+		//过滤掉 已经连通的重边 保留下来的边 相对顺序不变
+		int last = gt;
+		for (int j = gt; j < end; j++) {
+			if (!uf.isSame(array[j].from.index, array[j].to.index)) swap(array, last++, j);
+		}
+		if (heavySort != null) {
+			kruskal(array, gt, last, uf, edgesInfo);
+		} else {
+			filterKruskal(array, gt, last, uf, edgesInfo);
+		}
 	}
-
-
-	@Override
-	public Map<V, PathInfo<V, E>> shortestPath(V begin) {
-		return dijkstra(begin);
+	
+	/**
+	 * 按照顺序 处理 [begin, end) 中已经排好序的边
+	 */
+	private void kruskal(Edge<V, E>[] array, int begin, int end, UnionFind uf, Set<EdgeInfo<V, E>> edgesInfo) {
+		int size = verticesSize() - 1;
+		for (int i = begin; i < end && edgesInfo.size() < size; i++) {
+			if (uf.union(array[i].from.index, array[i].to.index)) {
+				edgesInfo.add(array[i].edgeInfo());
+			}
+		}
 	}
 	
-	private Map<V, PathInfo<V, E>> bellmanFord(V begin){
-		//用来返回 的 集合
-		Map<V, PathInfo<V, E>> selectedPaths = new HashMap<>();
-		//添加所有边
-		int times = verticesSize() - 1;
-		selectedPaths.put(begin, new PathInfo<>(weightManager.zero()));
-		for (int i = 0; i < times; i++) {
-			for (Edge<V, E> edge : edges) {
-				if(!selectedPaths.containsKey(edge.from.value)) continue;
-				relaxForbellmanFord(edge, selectedPaths);
+	/**
+	 * Boruvka 每一轮:
+	 * 1.记录每个顶点所在的连通分量 然后并行扫描所有的边 用 CAS 为每个连通分量 留下权值最小的出边
+	 * 2.并行地 合并这些边两边的连通分量 合并成功的边加入结果 去掉已经在同一个连通分量中的边
+	 * 权值相同时 按照边在数组中的位置比较 保证不会选出环
+	 * 多个连通分量 选中同一条边时 ConcurrentUnionFind 只让一个线程 合并成功
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Set<EdgeInfo<V, E>> boruvka() {
+		if (verticesSize() < 1) return null;
+		Set<EdgeInfo<V, E>> edgesInfo = new HashSet<>();
+		int size = vertexList.size();
+		Edge<V, E>[] array = edges.toArray(new Edge[edges.size()]);
+		int length = array.length;
+		ConcurrentUnionFind uf = new ConcurrentUnionFind(size);
+		int[] components = new int[size];
+		AtomicIntegerArray cheapest = new AtomicIntegerArray(size);
+		boolean[] merged = new boolean[length];
+		while (length > 0) {
+			for (int i = 0; i < size; i++) {
+				components[i] = uf.find(i);
+				cheapest.set(i, -1);
+			}
+			//任务超过 BORUVKA_THRESHOLD 时 compute() 会拆分 总是交给 forkJoinPool 执行 不能在当前线程 fork 到 commonPool
+			CheapestTask task = new CheapestTask(array, components, cheapest, 0, length);
+			MergeTask merge = new MergeTask(array, uf, cheapest, merged, 0, size);
+			if (length > BORUVKA_THRESHOLD) {
+				forkJoinPool.invoke(task);
+			} else {
+				task.compute();
+			}
+			if (size > BORUVKA_THRESHOLD) {
+				forkJoinPool.invoke(merge);
+			} else {
+				merge.compute();
+			}
+			for (int i = 0; i < size; i++) {
+				int edge = cheapest.get(i);
+				if (edge < 0 || !merged[edge]) continue;
+				merged[edge] = false;
+				edgesInfo.add(array[edge].edgeInfo());
 			}
+			//去掉 两个顶点已经连通的边
+			int last = 0;
+			for (int i = 0; i < length; i++) {
+				if (!uf.isSame(array[i].from.index, array[i].to.index)) swap(array, last++, i);
+			}
+			length = last;
 		}
-		selectedPaths.remove(begin);
-		return selectedPaths;
+		return edgesInfo;
 	}
 	
 	/**
-	 * 
-	 * @param edge
-	 * @param selectedPaths
+	 * 为每个连通分量 找到权值最小的出边 cheapest[连通分量] 为边在数组中的位置
 	 */
-	private void relaxForbellmanFord(Edge<V, E> edge, Map<V, PathInfo<V, E>> selectedPaths) {
-		PathInfo<V, E> pathInfo = selectedPaths.get(edge.from.value);
-		if (pathInfo == null) return;
+	private class CheapestTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Edge<V, E>[] array;
+		private final int[] components;
+		private final AtomicIntegerArray cheapest;
+		private final int begin;
+		private final int end;
 		
-		E newWeight = weightManager.add(pathInfo.weight, edge.weight);
+		CheapestTask(Edge<V, E>[] array, int[] components, AtomicIntegerArray cheapest, int begin, int end) {
+			this.array = array;
+			this.components = components;
+			this.cheapest = cheapest;
+			this.begin = begin;
+			this.end = end;
+		}
 		
-		PathInfo<V, E> oldPath = selectedPaths.get(edge.to.value);
+		@Override
+		protected void compute() {
+			if (end - begin <= BORUVKA_THRESHOLD) {
+				for (int i = begin; i < end; i++) {
+					int from = components[array[i].from.index];
+					int to = components[array[i].to.index];
+					if (from == to) continue;
+					offer(from, i);
+					offer(to, i);
+				}
+				return;
+			}
+			int mid = (begin + end) >>> 1;
+			invokeAll(new CheapestTask(array, components, cheapest, begin, mid),
+					new CheapestTask(array, components, cheapest, mid, end));
+		}
 		
-		if(oldPath == null || weightManager.compare(newWeight, oldPath.weight) < 0) {
-			if (oldPath == null) {
-				oldPath = new PathInfo<>();
-			}else {
-				oldPath.edgeInfos.clear();
+		private void offer(int component, int edge) {
+			int old = cheapest.get(component);
+			while (old < 0 || lighter(edge, old)) {
+				if (cheapest.compareAndSet(component, old, edge)) return;
+				old = cheapest.get(component);
 			}
-			oldPath.weight = newWeight;
-			oldPath.edgeInfos.addAll(pathInfo.edgeInfos);
-			oldPath.edgeInfos.add(edge.edgeInfo());
-			
-			selectedPaths.put(edge.to.value, oldPath);
+		}
+		
+		private boolean lighter(int edge1, int edge2) {
+			int cmp = weightManager.compare(array[edge1].weight, array[edge2].weight);
+			return cmp < 0 || (cmp == 0 && edge1 < edge2);
 		}
 	}
-
-
-	@SuppressWarnings("unused")
-	private Map<V, PathInfo<V, E>> dijkstra(V begin) {
-		//返回 起点到 这个点 的最小路径权值和
-		Map<V, PathInfo<V, E>> selectedPaths = new HashMap<>();
-		//用一个map集合来存取 要松弛的边
-		Map<Vertex<V, E>, PathInfo<V, E>> paths = new HashMap<>();
-		//获得起点
-		Vertex<V, E> vertex = vertices.get(begin);
-		//遍历顶点的 出度边
-		paths.put(vertex, new PathInfo<>(weightManager.zero()));
-		
-		while(!paths.isEmpty()) {
-			//从 paths 里面取出 权值最小的 边 指向的顶点
-			Entry<Vertex<V, E>, PathInfo<V, E>> minEntry = getMinPath(paths);
-			Vertex<V, E> minVertex = minEntry.getKey();
-			PathInfo<V, E> minPath = minEntry.getValue();
-			//将权值最小的边添加到map中并从outEdges移除
-			selectedPaths.put(minVertex.value, minPath);
-			paths.remove(minVertex);
-			//遍历 下一个 可能 minEdges 被拉起的 顶点
-			for(Edge<V, E> edge : minVertex.outEdges) {
-				//如果 这个顶点已经 被 拉起来了就不需要 松弛
-				if (selectedPaths.containsKey(edge.to.value)) continue;
-				relaxForDijkstra(edge, minPath, paths);
+	
+	/**
+	 * 合并 cheapest 中的边 两边的连通分量 merged[边在数组中的位置] 为 true 表示由它合并
+	 */
+	private class MergeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Edge<V, E>[] array;
+		private final ConcurrentUnionFind uf;
+		private final AtomicIntegerArray cheapest;
+		private final boolean[] merged;
+		private final int begin;
+		private final int end;
+		
+		MergeTask(Edge<V, E>[] array, ConcurrentUnionFind uf, AtomicIntegerArray cheapest, boolean[] merged, int begin, int end) {
+			this.array = array;
+			this.uf = uf;
+			this.cheapest = cheapest;
+			this.merged = merged;
+			this.begin = begin;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute() {
+			if (end - begin <= BORUVKA_THRESHOLD) {
+				for (int i = begin; i < end; i++) {
+					int edge = cheapest.get(i);
+					if (edge < 0) continue;
+					//同一条边 只有一个线程 合并成功 写入 merged 不会冲突
+					if (uf.union(array[edge].from.index, array[edge].to.index)) merged[edge] = true;
+				}
+				return;
 			}
+			int mid = (begin + end) >>> 1;
+			invokeAll(new MergeTask(array, uf, cheapest, merged, begin, mid),
+					new MergeTask(array, uf, cheapest, merged, mid, end));
 		}
-		selectedPaths.remove(begin);
-		return selectedPaths;
 	}
 	
-	private void relaxForDijkstra(Edge<V, E> edge, PathInfo<V, E> minPath, Map<Vertex<V, E>, PathInfo<V, E>> paths) {
-		PathInfo<V, E> oldPathInfo = paths.get(edge.to);
-		E newWeight = weightManager.add(minPath.weight, edge.weight);
-		if (oldPathInfo == null || weightManager.compare(newWeight, oldPathInfo.weight) < 0) {
-			if (oldPathInfo == null) {
-				oldPathInfo = new PathInfo<>();
-			}else {
-				oldPathInfo.edgeInfos.clear();
-			}
-			oldPathInfo.weight = newWeight;
-			oldPathInfo.edgeInfos.addAll(minPath.getEdgeInfos());
-			oldPathInfo.edgeInfos.add(edge.edgeInfo());
-			paths.put(edge.to, oldPathInfo);
+	private E median(E w1, E w2, E w3) {
+		if (weightManager.compare(w1, w2) > 0) {
+			E tmp = w1;
+			w1 = w2;
+			w2 = tmp;
 		}
+		if (weightManager.compare(w2, w3) <= 0) return w2;
+		return weightManager.compare(w1, w3) > 0 ? w1 : w3;
+	}
+	
+	private static <T> void swap(T[] array, int i, int j) {
+		T tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
 	}
 
-//	private Map<V, E> dijkstra1(V begin) {
-//		//返回 起点到 这个点 的最小路径权值和
-//		Map<V, E> map = new HashMap<>();
-//		//用一个map集合来存取 要松弛的边
-//		Map<Vertex<V, E>, E> paths = new HashMap<>();
+	/**
+	 * 构建当前图的 CSR 快照 之后对 ListGraph 的修改不会影响快照
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public CsrGraph<V, E> toCsr() {
+		int size = vertexList.size();
+		V[] values = (V[]) new Object[size];
+		int[] outOffsets = new int[size + 1];
+		for (int i = 0; i < size; i++) {
+			Vertex<V, E> vertex = vertexList.get(i);
+			values[i] = vertex.value;
+			outOffsets[i + 1] = outOffsets[i] + vertex.outEdges.size();
+		}
+		int[] outTargets = new int[outOffsets[size]];
+		E[] outWeights = (E[]) new Object[outOffsets[size]];
+		for (int i = 0; i < size; i++) {
+			int position = outOffsets[i];
+			for (Edge<V, E> edge : vertexList.get(i).outEdges) {
+				outTargets[position] = edge.to.index;
+				outWeights[position++] = edge.weight;
+			}
+		}
+		CsrGraph<V, E> csr = new CsrGraph<>(weightManager, values, outOffsets, outTargets, outWeights);
+		copySettings(csr);
+		return csr;
+	}
+	
+	/**
+	 * 内部使用的 CSR 快照 图没有被修改时 重复使用 只重新复制设置
+	 */
+	private CsrGraph<V, E> csr() {
+		if (csr == null) {
+			csr = toCsr();
+		} else {
+			copySettings(csr);
+		}
+		return csr;
+	}
+	
+	private void copySettings(CsrGraph<V, E> csr) {
+		csr.shortestPathStrategy = shortestPathStrategy;
+		csr.delta = delta;
+		csr.forkJoinPool = forkJoinPool;
+		csr.allPairsStrategy = allPairsStrategy;
+		csr.allPairsStorage = allPairsStorage;
+	}
+
+	@Override
+	public String toString() {
+		return "ListGraph [vertices=" + vertices + ", edges=" + edges + "]";
+	}
+
+
+	@Override
+	public Set<EdgeInfo<V, E>> mst() {
+		if (maintainedMst != null) return maintainedMst.edgeInfos();
+		lastMstStrategy = mstStrategy == MstStrategy.AUTO ? autoMstStrategy() : mstStrategy;
+		Set<EdgeInfo<V, E>> edgeInfos;
+		switch (lastMstStrategy) {
+		case PRIM:
+			edgeInfos = prim();
+			break;
+		case KRUSKAL:
+			edgeInfos = kruskal();
+			break;
+		case BORUVKA:
+			edgeInfos = boruvka();
+			break;
+		default:
+			edgeInfos = filterKruskal();
+		}
+		if (mstMaintained && edgeInfos != null) {
+			maintainedMst = new MaintainedMst(edgeInfos);
+		}
+		return edgeInfos;
+	}
+	
+	/**
+	 * 增量维护的拓扑序 Pearce-Kelly
+	 * 添加边 from -> to 时 如果 from 已经排在 to 前面 什么都不用做 否则只有排名在 [rank(to), rank(from)] 之间的顶点受影响:
+	 * 1.从 to 出发 沿出边 找到排名小于 rank(from) 的顶点 deltaF 遇到 from 说明会形成环
+	 * 2.从 from 出发 沿入边 找到排名大于 rank(to) 的顶点 deltaB
+	 * 3.把这两批顶点原来的排名 从小到大 依次分配给 deltaB 和 deltaF(各自保持原来的先后顺序)
+	 * 删除边 不会破坏拓扑序 删除顶点 只留下一个空的排名
+	 */
+	private class TopologicalOrder {
+		int[] ranks; //index -> 排名
+		Vertex<V, E>[] order; //排名 -> 顶点 删除的顶点 为 null
+		int next; //下一个新顶点的排名
+		
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		TopologicalOrder() {
+			int size = vertexList.size();
+			ranks = new int[Math.max(size, 8)];
+			order = new Vertex[Math.max(size, 8)];
+			for (V v : topologicalSortBfs()) {
+				add(vertices.get(v));
+			}
+		}
+		
+		/**
+		 * 新顶点 没有边 排在最后
+		 */
+		void add(Vertex<V, E> vertex) {
+			if (next == order.length) order = Arrays.copyOf(order, next << 1);
+			if (vertex.index >= ranks.length) ranks = Arrays.copyOf(ranks, Math.max(vertex.index + 1, ranks.length << 1));
+			ranks[vertex.index] = next;
+			order[next++] = vertex;
+		}
+		
+		/**
+		 * 在 vertexList 移动最后一个顶点 之前调用
+		 */
+		void remove(Vertex<V, E> vertex) {
+			order[ranks[vertex.index]] = null;
+			//空的排名 超过一半时 压缩
+			if (next > 2 * vertexList.size()) compact();
+			Vertex<V, E> last = vertexList.get(vertexList.size() - 1);
+			ranks[vertex.index] = ranks[last.index];
+		}
+		
+		private void compact() {
+			int rank = 0;
+			for (int i = 0; i < next; i++) {
+				Vertex<V, E> vertex = order[i];
+				if (vertex == null) continue;
+				ranks[vertex.index] = rank;
+				order[rank++] = vertex;
+			}
+			Arrays.fill(order, rank, next, null);
+			next = rank;
+		}
+		
+		List<V> list() {
+			List<V> list = new ArrayList<>(vertexList.size());
+			for (int i = 0; i < next; i++) {
+				if (order[i] != null) list.add(order[i].value);
+			}
+			return list;
+		}
+		
+		void insert(Vertex<V, E> from, Vertex<V, E> to) {
+			if (from == to) throw new RuntimeException("添加边 " + from.value + " -> " + to.value + " 会形成环！");
+			int lower = ranks[to.index];
+			int upper = ranks[from.index];
+			if (upper < lower) return;
+			IntList deltaF = new IntList();
+			IntList deltaB = new IntList();
+			TraversalContext context = TraversalContext.acquire(vertexList.size());
+			try {
+				if (!forward(to, upper, context, deltaF)) {
+					throw new RuntimeException("添加边 " + from.value + " -> " + to.value + " 会形成环！");
+				}
+				backward(from, lower, context, deltaB);
+			} finally {
+				context.release();
+			}
+			reorder(deltaB, deltaF);
+		}
+		
+		/**
+		 * 深度优先 找到 deltaF 遇到排名为 upper 的顶点(from) 返回 false
+		 */
+		private boolean forward(Vertex<V, E> to, int upper, TraversalContext context, IntList deltaF) {
+			int[] stack = context.vertices;
+			int top = 0;
+			stack[top++] = to.index;
+			context.visited.set(to.index);
+			while (top > 0) {
+				int index = stack[--top];
+				deltaF.add(index);
+				for (Edge<V, E> edge : vertexList.get(index).outEdges) {
+					int rank = ranks[edge.to.index];
+					if (rank == upper) return false;
+					if (rank > upper || context.visited.get(edge.to.index)) continue;
+					context.visited.set(edge.to.index);
+					stack[top++] = edge.to.index;
+				}
+			}
+			return true;
+		}
+		
+		/**
+		 * 深度优先 找到 deltaB 和 deltaF 没有交集 否则会形成环
+		 */
+		private void backward(Vertex<V, E> from, int lower, TraversalContext context, IntList deltaB) {
+			int[] stack = context.vertices;
+			int top = 0;
+			stack[top++] = from.index;
+			context.visited.set(from.index);
+			while (top > 0) {
+				int index = stack[--top];
+				deltaB.add(index);
+				for (Edge<V, E> edge : vertexList.get(index).inEdges) {
+					int rank = ranks[edge.from.index];
+					if (rank < lower || context.visited.get(edge.from.index)) continue;
+					context.visited.set(edge.from.index);
+					stack[top++] = edge.from.index;
+				}
+			}
+		}
+		
+		private void reorder(IntList deltaB, IntList deltaF) {
+			int[] b = sortByRank(deltaB);
+			int[] f = sortByRank(deltaF);
+			int[] slots = new int[b.length + f.length];
+			for (int i = 0; i < b.length; i++) {
+				slots[i] = ranks[b[i]];
+			}
+			for (int i = 0; i < f.length; i++) {
+				slots[b.length + i] = ranks[f[i]];
+			}
+			Arrays.sort(slots);
+			for (int i = 0; i < slots.length; i++) {
+				Vertex<V, E> vertex = vertexList.get(i < b.length ? b[i] : f[i - b.length]);
+				ranks[vertex.index] = slots[i];
+				order[slots[i]] = vertex;
+			}
+		}
+		
+		private int[] sortByRank(IntList list) {
+			int[] array = list.toArray();
+			for (int i = 0; i < array.length; i++) {
+				array[i] = ranks[array[i]];
+			}
+			Arrays.sort(array);
+			for (int i = 0; i < array.length; i++) {
+				array[i] = order[array[i]].index;
+			}
+			return array;
+		}
+	}
+	
+	/**
+	 * 增量维护的 最小生成森林 不考虑边的方向
+	 * 1.插入边 两个顶点不连通 直接加入 否则找到森林中 两个顶点之间的路径 新边比路径上最重的边轻 就替换它
+	 * 2.删除森林中的边 森林分成两部分 在图中找到 连接这两部分的 最轻的边 补上
+	 * 3.修改权值 在森林中 变轻不变 变重 相当于删除 不在森林中 相当于插入
+	 * 每次更新 O(V) 删除森林中的边 O(E)
+	 */
+	private class MaintainedMst {
+		private final Set<Edge<V, E>> treeEdges = new HashSet<>();
+		private final Map<Vertex<V, E>, Set<Edge<V, E>>> adjacency = new HashMap<>();
+		
+		MaintainedMst(Set<EdgeInfo<V, E>> edgeInfos) {
+			for (EdgeInfo<V, E> edgeInfo : edgeInfos) {
+				Vertex<V, E> from = vertices.get(edgeInfo.getFrom());
+				for (Edge<V, E> edge : from.outEdges) {
+					if (!Objects.equals(edge.to.value, edgeInfo.getTo())) continue;
+					link(edge);
+					break;
+				}
+			}
+		}
+		
+		Set<EdgeInfo<V, E>> edgeInfos() {
+			Set<EdgeInfo<V, E>> edgeInfos = new HashSet<>();
+			for (Edge<V, E> edge : treeEdges) {
+				edgeInfos.add(edge.edgeInfo());
+			}
+			return edgeInfos;
+		}
+		
+		void insert(Edge<V, E> edge) {
+			if (edge.from == edge.to) return;
+			List<Edge<V, E>> path = path(edge.from, edge.to);
+			if (path == null) {
+				link(edge);
+				return;
+			}
+			Edge<V, E> max = path.get(0);
+			for (Edge<V, E> pathEdge : path) {
+				if (weightManager.compare(pathEdge.weight, max.weight) > 0) max = pathEdge;
+			}
+			if (weightManager.compare(edge.weight, max.weight) >= 0) return;
+			cut(max);
+			link(edge);
+		}
+		
+		/**
+		 * @param edge 已经从图中删除的边
+		 */
+		void delete(Edge<V, E> edge) {
+			if (!treeEdges.contains(edge)) return;
+			cut(edge);
+			reconnect(edge.from);
+		}
+		
+		/**
+		 * @param edge 修改权值后的边 和 森林中原来的边 equals
+		 */
+		void reweight(Edge<V, E> edge) {
+			Edge<V, E> old = null;
+			for (Edge<V, E> treeEdge : adjacency.getOrDefault(edge.from, Collections.emptySet())) {
+				if (treeEdge.equals(edge)) old = treeEdge;
+			}
+			if (old == null) {
+				insert(edge);
+				return;
+			}
+			cut(old);
+			if (weightManager.compare(edge.weight, old.weight) <= 0) {
+				link(edge);
+			} else {
+				reconnect(edge.from);
+			}
+		}
+		
+		/**
+		 * vertex 所在的树 和 其它顶点 之间 找到图中最轻的边 加入森林
+		 */
+		private void reconnect(Vertex<V, E> vertex) {
+			Set<Vertex<V, E>> component = new HashSet<>();
+			Queue<Vertex<V, E>> queue = new LinkedList<>();
+			component.add(vertex);
+			queue.offer(vertex);
+			while (!queue.isEmpty()) {
+				Vertex<V, E> poll = queue.poll();
+				for (Edge<V, E> treeEdge : adjacency.getOrDefault(poll, Collections.emptySet())) {
+					Vertex<V, E> next = treeEdge.from == poll ? treeEdge.to : treeEdge.from;
+					if (component.add(next)) queue.offer(next);
+				}
+			}
+			Edge<V, E> min = null;
+			for (Edge<V, E> graphEdge : edges) {
+				if (component.contains(graphEdge.from) == component.contains(graphEdge.to)) continue;
+				if (min == null || weightManager.compare(graphEdge.weight, min.weight) < 0) min = graphEdge;
+			}
+			//找不到 说明 删除的边是桥 森林多一棵树
+			if (min != null) link(min);
+		}
+		
+		/**
+		 * 森林中 from 到 to 的路径 不连通返回 null
+		 */
+		private List<Edge<V, E>> path(Vertex<V, E> from, Vertex<V, E> to) {
+			Map<Vertex<V, E>, Edge<V, E>> parentEdges = new HashMap<>();
+			Queue<Vertex<V, E>> queue = new LinkedList<>();
+			parentEdges.put(from, null);
+			queue.offer(from);
+			while (!queue.isEmpty()) {
+				Vertex<V, E> poll = queue.poll();
+				if (poll == to) break;
+				for (Edge<V, E> treeEdge : adjacency.getOrDefault(poll, Collections.emptySet())) {
+					Vertex<V, E> next = treeEdge.from == poll ? treeEdge.to : treeEdge.from;
+					if (parentEdges.containsKey(next)) continue;
+					parentEdges.put(next, treeEdge);
+					queue.offer(next);
+				}
+			}
+			if (!parentEdges.containsKey(to)) return null;
+			List<Edge<V, E>> path = new ArrayList<>();
+			for (Vertex<V, E> vertex = to; vertex != from; ) {
+				Edge<V, E> parentEdge = parentEdges.get(vertex);
+				path.add(parentEdge);
+				vertex = parentEdge.from == vertex ? parentEdge.to : parentEdge.from;
+			}
+			return path;
+		}
+		
+		private void link(Edge<V, E> edge) {
+			treeEdges.add(edge);
+			adjacency.computeIfAbsent(edge.from, vertex -> new HashSet<>()).add(edge);
+			adjacency.computeIfAbsent(edge.to, vertex -> new HashSet<>()).add(edge);
+		}
+		
+		private void cut(Edge<V, E> edge) {
+			treeEdges.remove(edge);
+			adjacency.get(edge.from).remove(edge);
+			adjacency.get(edge.to).remove(edge);
+		}
+	}
+
+
+	@Override
+	public Map<V, PathInfo<V, E>> shortestPath(V begin) {
+		if (shortestPathStrategy == ShortestPathStrategy.BELLMAN_FORD) return bellmanFord(begin);
+		if (shortestPathStrategy == ShortestPathStrategy.SPFA) return spfa(begin);
+		if (shortestPathStrategy == ShortestPathStrategy.DELTA_STEPPING
+				&& (weightManager instanceof DoubleWeightManager || weightManager instanceof LongWeightManager)) {
+			//在 CSR 快照上并行计算 图没有修改时 快照会重复使用
+			return vertices.containsKey(begin) ? csr().shortestPath(begin) : new HashMap<>();
+		}
+		return dijkstra(begin);
+	}
+	
+	/**
+	 * 双向 dijkstra 从 from 沿着 outEdges 向前搜索 从 to 沿着 inEdges 向后搜索
+	 * 两边堆顶的权值之和 不小于 已经找到的最短路径 时停止
+	 * 和 dijkstra 一样 不支持负权边
+	 */
+	@Override
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public PathInfo<V, E> shortestPath(V from, V to) {
+		Vertex<V, E> source = vertices.get(from);
+		Vertex<V, E> target = vertices.get(to);
+		if (source == null || target == null || source == target) return null;
+		int size = vertexList.size();
+		//[0] 向前搜索 [1] 向后搜索
+		E[][] weights = (E[][]) new Object[][] {new Object[size], new Object[size]};
+		Edge<V, E>[][] parentEdges = new Edge[][] {new Edge[size], new Edge[size]};
+		boolean[][] selected = new boolean[2][size];
+		IndexedMinHeap<E>[] heaps = new IndexedMinHeap[] {
+			new IndexedMinHeap<>(size, weightManager::compare),
+			new IndexedMinHeap<>(size, weightManager::compare)
+		};
+		weights[0][source.index] = weightManager.zero();
+		weights[1][target.index] = weightManager.zero();
+		heaps[0].add(source.index, weights[0][source.index]);
+		heaps[1].add(target.index, weights[1][target.index]);
+		E best = null; //目前找到的最短路径权值
+		int meet = -1; //最短路径上 两边都到达过的顶点
+		
+		while (!heaps[0].isEmpty() && !heaps[1].isEmpty()) {
+			E bound = weightManager.add(heaps[0].getKey(heaps[0].get()), heaps[1].getKey(heaps[1].get()));
+			if (best != null && weightManager.compare(bound, best) >= 0) break;
+			//每次扩展 堆比较小的 那一边
+			int side = heaps[0].size() <= heaps[1].size() ? 0 : 1;
+			E[] sideWeights = weights[side];
+			E[] otherWeights = weights[1 - side];
+			Vertex<V, E> minVertex = vertexList.get(heaps[side].remove());
+			selected[side][minVertex.index] = true;
+			for (Edge<V, E> edge : side == 0 ? minVertex.outEdges : minVertex.inEdges) {
+				Vertex<V, E> next = side == 0 ? edge.to : edge.from;
+				if (selected[side][next.index]) continue;
+				E newWeight = weightManager.add(sideWeights[minVertex.index], edge.weight);
+				E oldWeight = sideWeights[next.index];
+				if (oldWeight == null) {
+					heaps[side].add(next.index, newWeight);
+				} else if (weightManager.compare(newWeight, oldWeight) < 0) {
+					heaps[side].decreaseKey(next.index, newWeight);
+				} else {
+					continue;
+				}
+				sideWeights[next.index] = newWeight;
+				parentEdges[side][next.index] = edge;
+				//另一边也到达过 next 得到一条 from -> next -> to 的路径
+				if (otherWeights[next.index] == null) continue;
+				E weight = weightManager.add(newWeight, otherWeights[next.index]);
+				if (best == null || weightManager.compare(weight, best) < 0) {
+					best = weight;
+					meet = next.index;
+				}
+			}
+		}
+		if (meet < 0) return null;
+		
+		PathInfo<V, E> pathInfo = new PathInfo<>(best);
+		LinkedList<EdgeInfo<V, E>> edgeInfos = (LinkedList<EdgeInfo<V, E>>) pathInfo.getEdgeInfos();
+		for (Edge<V, E> edge = parentEdges[0][meet]; edge != null; edge = parentEdges[0][edge.from.index]) {
+			edgeInfos.addFirst(edge.edgeInfo());
+		}
+		for (Edge<V, E> edge = parentEdges[1][meet]; edge != null; edge = parentEdges[1][edge.to.index]) {
+			edgeInfos.addLast(edge.edgeInfo());
+		}
+		return pathInfo;
+	}
+	
+	/**
+	 * A* 堆按照 已走的权值 + heuristic 估计的剩余权值 排序 取出 to 时结束
+	 * heuristic 不一致(但可采纳)时 已经取出的顶点 遇到更短的路径会被重新放回堆中
+	 * 开启断言(-ea)时 检查路径上每个顶点的估计值 都不超过 实际的剩余权值
+	 */
+	@Override
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public PathInfo<V, E> aStar(V from, V to, Heuristic<V, E> heuristic) {
+		Vertex<V, E> source = vertices.get(from);
+		Vertex<V, E> target = vertices.get(to);
+		if (source == null || target == null || source == target) return null;
+		int size = vertexList.size();
+		E[] weights = (E[]) new Object[size]; //已走的权值
+		E[] estimates = (E[]) new Object[size]; //缓存 heuristic 的结果
+		Edge<V, E>[] parentEdges = new Edge[size];
+		IndexedMinHeap<E> heap = new IndexedMinHeap<>(size, weightManager::compare);
+		weights[source.index] = weightManager.zero();
+		estimates[source.index] = heuristic.estimate(from, to);
+		heap.add(source.index, estimates[source.index]);
+		
+		while (!heap.isEmpty()) {
+			Vertex<V, E> minVertex = vertexList.get(heap.remove());
+			if (minVertex == target) break;
+			for (Edge<V, E> edge : minVertex.outEdges) {
+				Vertex<V, E> next = edge.to;
+				E newWeight = weightManager.add(weights[minVertex.index], edge.weight);
+				E oldWeight = weights[next.index];
+				if (oldWeight != null && weightManager.compare(newWeight, oldWeight) >= 0) continue;
+				if (estimates[next.index] == null) {
+					estimates[next.index] = heuristic.estimate(next.value, to);
+				}
+				E key = weightManager.add(newWeight, estimates[next.index]);
+				//不在堆中的顶点 可能是第一次到达 也可能是被重新打开
+				if (heap.contains(next.index)) {
+					heap.decreaseKey(next.index, key);
+				} else {
+					heap.add(next.index, key);
+				}
+				weights[next.index] = newWeight;
+				parentEdges[next.index] = edge;
+			}
+		}
+		if (weights[target.index] == null) return null;
+		
+		PathInfo<V, E> pathInfo = new PathInfo<>(weights[target.index]);
+		LinkedList<EdgeInfo<V, E>> edgeInfos = (LinkedList<EdgeInfo<V, E>>) pathInfo.getEdgeInfos();
+		for (Edge<V, E> edge = parentEdges[target.index]; edge != null; edge = parentEdges[edge.from.index]) {
+			edgeInfos.addFirst(edge.edgeInfo());
+		}
+		assert admissible(pathInfo, heuristic, to);
+		return pathInfo;
+	}
+	
+	/**
+	 * 沿着 最短路径 从终点往回 检查 heuristic 没有高估 剩余的权值
+	 */
+	private boolean admissible(PathInfo<V, E> pathInfo, Heuristic<V, E> heuristic, V to) {
+		E remaining = weightManager.zero();
+		Iterator<EdgeInfo<V, E>> iterator = ((LinkedList<EdgeInfo<V, E>>) pathInfo.getEdgeInfos()).descendingIterator();
+		while (iterator.hasNext()) {
+			EdgeInfo<V, E> edgeInfo = iterator.next();
+			E estimate = heuristic.estimate(edgeInfo.getTo(), to);
+			if (weightManager.compare(estimate, remaining) > 0) {
+				throw new AssertionError("heuristic不可采纳: " + edgeInfo.getTo() + " 估计值 " + estimate + " > 实际值 " + remaining);
+			}
+			remaining = weightManager.add(remaining, edgeInfo.getWeight());
+		}
+		V from = pathInfo.getEdgeInfos().get(0).getFrom();
+		E estimate = heuristic.estimate(from, to);
+		if (weightManager.compare(estimate, remaining) > 0) {
+			throw new AssertionError("heuristic不可采纳: " + from + " 估计值 " + estimate + " > 实际值 " + remaining);
+		}
+		return true;
+	}
+	
+	/**
+	 * 某一轮没有任何松弛时提前结束
+	 * 第 V 轮仍能松弛 说明存在负权环 继续松弛直到 父边 成环 抛出 NegativeCycleException
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<V, PathInfo<V, E>> bellmanFord(V begin){
+		if (weightManager instanceof DoubleWeightManager) return bellmanFordDouble(begin);
+		if (weightManager instanceof LongWeightManager) return bellmanFordLong(begin);
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return new HashMap<>();
+		//用来返回 的 结果 只记录 权值 以及 父边
+		Tree tree = new Tree(vertex);
+		tree.weights = (E[]) new Object[tree.parentEdges.length];
+		tree.weights[vertex.index] = weightManager.zero();
+		//添加所有边
+		int times = verticesSize() - 1;
+		for (int i = 0; ; i++) {
+			boolean relaxed = false;
+			for (Edge<V, E> edge : edges) {
+				if(tree.weights[edge.from.index] == null) continue;
+				if (!relaxForbellmanFord(edge, tree)) continue;
+				relaxed = true;
+				if (i >= times) negativeCycleCheck(tree.parentEdges, edge.to);
+			}
+			if (!relaxed) return tree;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param edge
+	 * @param tree
+	 * @return 是否松弛成功
+	 */
+	private boolean relaxForbellmanFord(Edge<V, E> edge, Tree tree) {
+		E newWeight = weightManager.add(tree.weights[edge.from.index], edge.weight);
+		E oldWeight = tree.weights[edge.to.index];
+		if(oldWeight != null && weightManager.compare(newWeight, oldWeight) >= 0) return false;
+		tree.weights[edge.to.index] = newWeight;
+		tree.parentEdges[edge.to.index] = edge;
+		return true;
+	}
+	
+	/**
+	 * 从 vertex 沿着 父边 往回走 回到走过的顶点 说明 父边 成环 这个环一定是负权环
+	 * 走到源点 说明 父边 还没有成环 直接返回
+	 */
+	private void negativeCycleCheck(Edge<V, E>[] parentEdges, Vertex<V, E> vertex) {
+		boolean[] visited = new boolean[parentEdges.length];
+		while (!visited[vertex.index]) {
+			visited[vertex.index] = true;
+			Edge<V, E> parentEdge = parentEdges[vertex.index];
+			if (parentEdge == null) return;
+			vertex = parentEdge.from;
+		}
+		LinkedList<EdgeInfo<V, E>> cycle = new LinkedList<>();
+		Vertex<V, E> current = vertex;
+		do {
+			Edge<V, E> parentEdge = parentEdges[current.index];
+			cycle.addFirst(parentEdge.edgeInfo());
+			current = parentEdge.from;
+		} while (current != vertex);
+		throw new NegativeCycleException(cycle);
+	}
+	
+	/**
+	 * bellmanFord 的 double 特化版本 权值存放在 double[] 中 松弛过程不装箱
+	 */
+	private Map<V, PathInfo<V, E>> bellmanFordDouble(V begin) {
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return new HashMap<>();
+		Tree tree = new Tree(vertex);
+		double[] weights = tree.doubleWeights = new double[tree.parentEdges.length];
+		int times = verticesSize() - 1;
+		for (int i = 0; ; i++) {
+			boolean relaxed = false;
+			for (Edge<V, E> edge : edges) {
+				int from = edge.from.index;
+				if (from != vertex.index && tree.parentEdges[from] == null) continue;
+				int to = edge.to.index;
+				double newWeight = weights[from] + (Double) edge.weight;
+				if ((to == vertex.index || tree.parentEdges[to] != null) && newWeight >= weights[to]) continue;
+				weights[to] = newWeight;
+				tree.parentEdges[to] = edge;
+				relaxed = true;
+				if (i >= times) negativeCycleCheck(tree.parentEdges, edge.to);
+			}
+			if (!relaxed) return tree;
+		}
+	}
+	
+	/**
+	 * bellmanFord 的 long 特化版本 权值存放在 long[] 中 松弛过程不装箱
+	 */
+	private Map<V, PathInfo<V, E>> bellmanFordLong(V begin) {
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return new HashMap<>();
+		Tree tree = new Tree(vertex);
+		long[] weights = tree.longWeights = new long[tree.parentEdges.length];
+		int times = verticesSize() - 1;
+		for (int i = 0; ; i++) {
+			boolean relaxed = false;
+			for (Edge<V, E> edge : edges) {
+				int from = edge.from.index;
+				if (from != vertex.index && tree.parentEdges[from] == null) continue;
+				int to = edge.to.index;
+				long newWeight = weights[from] + (Long) edge.weight;
+				if ((to == vertex.index || tree.parentEdges[to] != null) && newWeight >= weights[to]) continue;
+				weights[to] = newWeight;
+				tree.parentEdges[to] = edge;
+				relaxed = true;
+				if (i >= times) negativeCycleCheck(tree.parentEdges, edge.to);
+			}
+			if (!relaxed) return tree;
+		}
+	}
+	
+	/**
+	 * SPFA 队列优化的 bellmanFord 只松弛 权值变小了的顶点 的 outEdges 队列为空时结束
+	 * 没有负权环时 每个顶点 最多入队 V - 1 次 入队次数达到 V 说明存在负权环
+	 * 之后每次入队 都沿着 父边 往回找环 父边 成环时 抛出 NegativeCycleException
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<V, PathInfo<V, E>> spfa(V begin) {
+		if (weightManager instanceof DoubleWeightManager) return spfaDouble(begin);
+		if (weightManager instanceof LongWeightManager) return spfaLong(begin);
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return new HashMap<>();
+		Tree tree = new Tree(vertex);
+		int size = tree.parentEdges.length;
+		tree.weights = (E[]) new Object[size];
+		tree.weights[vertex.index] = weightManager.zero();
+		int[] counts = new int[size]; //入队次数
+		boolean[] inQueue = new boolean[size];
+		Deque<Vertex<V, E>> queue = new ArrayDeque<>();
+		queue.offer(vertex);
+		inQueue[vertex.index] = true;
+		while (!queue.isEmpty()) {
+			Vertex<V, E> from = queue.poll();
+			inQueue[from.index] = false;
+			for (Edge<V, E> edge : from.outEdges) {
+				if (!relaxForbellmanFord(edge, tree)) continue;
+				enqueueForSpfa(edge.to, tree.parentEdges, counts, inQueue, queue);
+			}
+		}
+		return tree;
+	}
+	
+	/**
+	 * 顶点 不在队列中时 入队 并增加 入队次数 达到 V 之后 检查 父边 是否成环
+	 */
+	private void enqueueForSpfa(Vertex<V, E> to, Edge<V, E>[] parentEdges, int[] counts, boolean[] inQueue, Deque<Vertex<V, E>> queue) {
+		if (inQueue[to.index]) return;
+		if (++counts[to.index] >= parentEdges.length) negativeCycleCheck(parentEdges, to);
+		inQueue[to.index] = true;
+		queue.offer(to);
+	}
+	
+	/**
+	 * spfa 的 double 特化版本 权值存放在 double[] 中 松弛过程不装箱
+	 */
+	private Map<V, PathInfo<V, E>> spfaDouble(V begin) {
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return new HashMap<>();
+		Tree tree = new Tree(vertex);
+		int size = tree.parentEdges.length;
+		double[] weights = tree.doubleWeights = new double[size];
+		int[] counts = new int[size];
+		boolean[] inQueue = new boolean[size];
+		Deque<Vertex<V, E>> queue = new ArrayDeque<>();
+		queue.offer(vertex);
+		inQueue[vertex.index] = true;
+		while (!queue.isEmpty()) {
+			Vertex<V, E> poll = queue.poll();
+			int from = poll.index;
+			inQueue[from] = false;
+			for (Edge<V, E> edge : poll.outEdges) {
+				int to = edge.to.index;
+				double newWeight = weights[from] + (Double) edge.weight;
+				if ((to == vertex.index || tree.parentEdges[to] != null) && newWeight >= weights[to]) continue;
+				weights[to] = newWeight;
+				tree.parentEdges[to] = edge;
+				enqueueForSpfa(edge.to, tree.parentEdges, counts, inQueue, queue);
+			}
+		}
+		return tree;
+	}
+	
+	/**
+	 * spfa 的 long 特化版本 权值存放在 long[] 中 松弛过程不装箱
+	 */
+	private Map<V, PathInfo<V, E>> spfaLong(V begin) {
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return new HashMap<>();
+		Tree tree = new Tree(vertex);
+		int size = tree.parentEdges.length;
+		long[] weights = tree.longWeights = new long[size];
+		int[] counts = new int[size];
+		boolean[] inQueue = new boolean[size];
+		Deque<Vertex<V, E>> queue = new ArrayDeque<>();
+		queue.offer(vertex);
+		inQueue[vertex.index] = true;
+		while (!queue.isEmpty()) {
+			Vertex<V, E> poll = queue.poll();
+			int from = poll.index;
+			inQueue[from] = false;
+			for (Edge<V, E> edge : poll.outEdges) {
+				int to = edge.to.index;
+				long newWeight = weights[from] + (Long) edge.weight;
+				if ((to == vertex.index || tree.parentEdges[to] != null) && newWeight >= weights[to]) continue;
+				weights[to] = newWeight;
+				tree.parentEdges[to] = edge;
+				enqueueForSpfa(edge.to, tree.parentEdges, counts, inQueue, queue);
+			}
+		}
+		return tree;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<V, PathInfo<V, E>> dijkstra(V begin) {
+		if (weightManager instanceof DoubleWeightManager) return dijkstraDouble(begin);
+		if (weightManager instanceof LongWeightManager) return dijkstraLong(begin);
+		//获得起点
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return new HashMap<>();
+		//返回 起点到 这个点 的最小路径权值 以及 父边
+		Tree tree = new Tree(vertex);
+		tree.weights = (E[]) new Object[tree.parentEdges.length];
+		//已经被 拉起 的顶点
+		boolean[] selected = new boolean[tree.parentEdges.length];
+		//索引堆 用来取出 权值最小的 顶点 代替线性扫描
+		IndexedMinHeap<E> heap = new IndexedMinHeap<>(selected.length, weightManager::compare);
+		tree.weights[vertex.index] = weightManager.zero();
+		heap.add(vertex.index, tree.weights[vertex.index]);
+		
+		while(!heap.isEmpty()) {
+			//从 堆 里面取出 权值最小的 顶点
+			Vertex<V, E> minVertex = vertexList.get(heap.remove());
+			selected[minVertex.index] = true;
+			//遍历 下一个 可能 minEdges 被拉起的 顶点
+			for(Edge<V, E> edge : minVertex.outEdges) {
+				//如果 这个顶点已经 被 拉起来了就不需要 松弛
+				if (selected[edge.to.index]) continue;
+				relaxForDijkstra(edge, tree, heap);
+			}
+		}
+		return tree;
+	}
+	
+	private void relaxForDijkstra(Edge<V, E> edge, Tree tree, IndexedMinHeap<E> heap) {
+		int to = edge.to.index;
+		E newWeight = weightManager.add(tree.weights[edge.from.index], edge.weight);
+		if (!heap.contains(to)) {
+			heap.add(to, newWeight);
+		} else if (weightManager.compare(newWeight, heap.getKey(to)) < 0) {
+			heap.decreaseKey(to, newWeight);
+		} else {
+			return;
+		}
+		tree.weights[to] = newWeight;
+		tree.parentEdges[to] = edge;
+	}
+	
+	/**
+	 * dijkstra 的 double 特化版本 距离存放在 double[] 中 松弛过程不装箱
+	 */
+	private Map<V, PathInfo<V, E>> dijkstraDouble(V begin) {
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return new HashMap<>();
+		Tree tree = new Tree(vertex);
+		double[] weights = tree.doubleWeights = new double[tree.parentEdges.length];
+		boolean[] selected = new boolean[weights.length];
+		DoubleIndexedMinHeap heap = new DoubleIndexedMinHeap(weights.length);
+		heap.add(vertex.index, 0);
+		while (!heap.isEmpty()) {
+			Vertex<V, E> minVertex = vertexList.get(heap.remove());
+			selected[minVertex.index] = true;
+			double minWeight = weights[minVertex.index];
+			for (Edge<V, E> edge : minVertex.outEdges) {
+				int to = edge.to.index;
+				//如果 这个顶点已经 被 拉起来了就不需要 松弛
+				if (selected[to]) continue;
+				double newWeight = minWeight + (Double) edge.weight;
+				if (!heap.contains(to)) {
+					heap.add(to, newWeight);
+				} else if (newWeight < weights[to]) {
+					heap.decreaseKey(to, newWeight);
+				} else {
+					continue;
+				}
+				weights[to] = newWeight;
+				tree.parentEdges[to] = edge;
+			}
+		}
+		return tree;
+	}
+	
+	/**
+	 * dijkstra 的 long 特化版本 距离存放在 long[] 中 松弛过程不装箱
+	 */
+	private Map<V, PathInfo<V, E>> dijkstraLong(V begin) {
+		Vertex<V, E> vertex = vertices.get(begin);
+		if (vertex == null) return new HashMap<>();
+		Tree tree = new Tree(vertex);
+		long[] weights = tree.longWeights = new long[tree.parentEdges.length];
+		boolean[] selected = new boolean[weights.length];
+		LongIndexedMinHeap heap = new LongIndexedMinHeap(weights.length);
+		heap.add(vertex.index, 0L);
+		while (!heap.isEmpty()) {
+			Vertex<V, E> minVertex = vertexList.get(heap.remove());
+			selected[minVertex.index] = true;
+			long minWeight = weights[minVertex.index];
+			for (Edge<V, E> edge : minVertex.outEdges) {
+				int to = edge.to.index;
+				//如果 这个顶点已经 被 拉起来了就不需要 松弛
+				if (selected[to]) continue;
+				long newWeight = minWeight + (Long) edge.weight;
+				if (!heap.contains(to)) {
+					heap.add(to, newWeight);
+				} else if (newWeight < weights[to]) {
+					heap.decreaseKey(to, newWeight);
+				} else {
+					continue;
+				}
+				weights[to] = newWeight;
+				tree.parentEdges[to] = edge;
+			}
+		}
+		return tree;
+	}
+	
+	/**
+	 * 单源最短路径 的结果 每个顶点只记录 权值 和 父边 路径在取出时才还原
+	 * 权值 按照 weightManager 的类型 存放在 weights / doubleWeights / longWeights 之一
+	 */
+	private class Tree extends ShortestPathTree<V, E> {
+		final Vertex<V, E> vertex; //源点
+		final Edge<V, E>[] parentEdges; //index -> 父边 源点以及没有到达的顶点为 null
+		E[] weights;
+		double[] doubleWeights;
+		long[] longWeights;
+		
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Tree(Vertex<V, E> vertex) {
+			super(vertex.index);
+			this.vertex = vertex;
+			this.parentEdges = new Edge[vertexList.size()];
+		}
+
+		@Override
+		int verticesSize() {
+			return parentEdges.length;
+		}
+
+		@Override
+		int indexOf(Object value) {
+			Vertex<V, E> v = vertices.get(value);
+			if (v == null || v.index >= parentEdges.length) return -1;
+			if (v == vertex) return v.index;
+			//图被修改后 index 可能已经属于其它顶点
+			Edge<V, E> parentEdge = parentEdges[v.index];
+			return parentEdge == null || parentEdge.to == v ? v.index : -1;
+		}
+
+		@Override
+		V valueOf(int index) {
+			return index == source ? vertex.value : parentEdges[index].to.value;
+		}
+
+		@Override
+		boolean reached(int index) {
+			return parentEdges[index] != null;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		E weightOf(int index) {
+			if (doubleWeights != null) return (E) Double.valueOf(doubleWeights[index]);
+			if (longWeights != null) return (E) Long.valueOf(longWeights[index]);
+			return weights[index];
+		}
+
+		@Override
+		int parentOf(int index) {
+			Edge<V, E> parentEdge = parentEdges[index];
+			return parentEdge == null ? -1 : parentEdge.from.index;
+		}
+
+		@Override
+		EdgeInfo<V, E> parentEdgeInfo(int index) {
+			return parentEdges[index].edgeInfo();
+		}
+	}
+
+//	private Map<V, E> dijkstra1(V begin) {
+//		//返回 起点到 这个点 的最小路径权值和
+//		Map<V, E> map = new HashMap<>();
+//		//用一个map集合来存取 要松弛的边
+//		Map<Vertex<V, E>, E> paths = new HashMap<>();
 //		//获得起点
 //		Vertex<V, E> vertex = vertices.get(begin);
 //		
@@ -561,80 +2030,112 @@ public class ListGraph<V, E> extends Graph<V, E> {
 //		return vertex;
 //	}
 	
-	private Entry<Vertex<V, E>, PathInfo<V, E>> getMinPath(Map<Vertex<V, E>, PathInfo<V, E>> paths){
-		Iterator<Entry<Vertex<V, E>, PathInfo<V, E>>> iterator = paths.entrySet().iterator();
-		Entry<Vertex<V, E>, PathInfo<V, E>> minPath = iterator.next();
-		while(iterator.hasNext()) {
-			Entry<Vertex<V, E>, PathInfo<V, E>> next = iterator.next();
-			if (weightManager.compare(next.getValue().weight, minPath.getValue().weight) < 0) {
-				minPath = next;
-			}
-		}
-		return minPath;
-	}
-
 
+	/**
+	 * 多源最短路径 按照 allPairsStrategy / allPairsStorage 计算 见 allPairsPaths
+	 */
 	@Override
 	public Map<V, Map<V, PathInfo<V, E>>> shortestPath() {
-		Map<V, Map<V, PathInfo<V, E>>> paths = new HashMap<>();
-		//遍历所有边 将 所有边添加到 paths 中
-		edges.forEach((Edge<V, E> edge) -> {
-			//先从 paths中 获取 edge的起点 edge.from
-			Map<V, PathInfo<V, E>> toMap = paths.get(edge.from.value);
-			//如果 toMap 为空 就代表 edge.from 还不存在paths中 
-			if (toMap == null) {
-				toMap = new HashMap<>();
-				//将 edge.from 作为起点的顶点添加到paths 中
-				paths.put(edge.from.value, toMap);
-			}
-			//创建 一条路径信息 并且设置其weight
-			PathInfo<V, E> pathInfo =  new PathInfo<V, E>(edge.weight);
-			//将当前遍历的边 添加到 路径集中 实际每个pathInfo.edgeInfos 中只含有一条边
-			pathInfo.edgeInfos.add(edge.edgeInfo());
-			//将终点 添加到toMap中 toMap的大小可能有多个
-			toMap.put(edge.to.value, pathInfo);
-		});
-		
-		vertices.forEach((V k, Vertex<V, E> vertexk) -> {
-			vertices.forEach((V i, Vertex<V, E> vertexi) -> {
-				vertices.forEach((V j, Vertex<V, E> vertexj) -> {
-					//k i j 三者需要满足互不相等
-					if (k.equals(i) || k.equals(j) || i.equals(j)) return;
-					//获取 i -> k 的路径
-					PathInfo<V,E> pathIK = getPathInfo(i, k, paths);
-					if (pathIK == null) return;
-					//获取 k -> j 的路径
-					PathInfo<V,E> pathKJ = getPathInfo(k, j, paths);
-					if (pathKJ == null) return;
-					//获取 i -> j 的路径
-					PathInfo<V,E> pathIJ = getPathInfo(i, j, paths);
-					//计算出新路径 的权值
-					E newWeight = weightManager.add(pathIK.weight, pathKJ.weight);
-					//如果 旧路径 不等于 空 且权值 小于等于 新权值 则不需要 更新
-					if (pathIJ != null && weightManager.compare(pathIJ.weight, newWeight) <= 0) return;
-					//如果旧路径等于空 
-					if (pathIJ == null) {
-						//创建新的路径
-						pathIJ = new PathInfo<>(newWeight);
-						paths.get(i).put(j, pathIJ);
-					}else {
-						pathIJ.edgeInfos.clear();
-					}
-					pathIJ.weight = newWeight;
-					pathIJ.edgeInfos.addAll(pathIK.edgeInfos);
-					pathIJ.edgeInfos.addAll(pathKJ.edgeInfos);
-					
-				});
-			});
-		});
+		return allPairsPaths();
+	}
+
+
+	/**
+	 * 多源最短路径 结果只保存 权值矩阵 以及 第一跳矩阵 路径在取出时才还原
+	 * 按照 allPairsStrategy 选择 Floyd / Johnson 按照 allPairsStorage 选择矩阵的存放位置
+	 * 不是 DoubleWeightManager / LongWeightManager 时 在 CSR 快照上计算 矩阵放在堆上
+	 */
+	public AllPairsPaths<V, E> allPairsPaths() {
+		if (!(weightManager instanceof DoubleWeightManager || weightManager instanceof LongWeightManager)) {
+			return csr().allPairsPaths();
+		}
+		if (allPairsStrategy == AllPairsStrategy.JOHNSON) return csr().johnson();
+		return floyd();
+	}
+	
+	/**
+	 * Floyd 直接在 allPairsStorage 选择的矩阵上 交给 BlockedFloydWarshall 分块并行计算
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private AllPairsPaths<V, E> floyd() {
+		int size = vertexList.size();
+		boolean longWeights = weightManager instanceof LongWeightManager;
+		Edge<V, E>[] edgeArray = edges.toArray(new Edge[0]);
+		Paths paths = new Paths(size, longWeights, edgeArray);
+		paths.fillUnreachable();
+		for (int hop = 0; hop < edgeArray.length; hop++) {
+			Edge<V, E> edge = edgeArray[hop];
+			//自环 不参与计算
+			if (edge.from == edge.to) continue;
+			if (longWeights) {
+				paths.set(edge.from.index, edge.to.index, (Long) edge.weight, hop);
+			} else {
+				paths.set(edge.from.index, edge.to.index, (Double) edge.weight, hop);
+			}
+		}
+		BlockedFloydWarshall.run(paths, forkJoinPool);
+		//和原来的 Floyd 一样 i -> i 只包含 自环
+		for (int i = 0; i < size; i++) {
+			paths.setHop(i, i, -1);
+		}
+		for (int hop = 0; hop < edgeArray.length; hop++) {
+			Edge<V, E> edge = edgeArray[hop];
+			if (edge.from != edge.to) continue;
+			if (longWeights) {
+				paths.set(edge.from.index, edge.from.index, (Long) edge.weight, hop);
+			} else {
+				paths.set(edge.from.index, edge.from.index, (Double) edge.weight, hop);
+			}
+		}
 		return paths;
 	}
 
+	/**
+	 * 多源最短路径 的结果 第一跳 为 边在 edgeArray 中的位置
+	 */
+	private class Paths extends AllPairsPaths<V, E> {
+		final Edge<V, E>[] edgeArray;
+		//计算时 顶点以及边的终点 的 index 之后删除顶点 会改变 Vertex.index
+		private final V[] values;
+		private final Map<V, Integer> indexes;
+		private final int[] targets;
+		
+		@SuppressWarnings("unchecked")
+		Paths(int size, boolean longWeights, Edge<V, E>[] edgeArray) {
+			super(size, longWeights, allPairsStorage);
+			this.edgeArray = edgeArray;
+			values = (V[]) new Object[size];
+			indexes = new HashMap<>();
+			for (int i = 0; i < size; i++) {
+				values[i] = vertexList.get(i).value;
+				indexes.put(values[i], i);
+			}
+			targets = new int[edgeArray.length];
+			for (int hop = 0; hop < edgeArray.length; hop++) {
+				targets[hop] = edgeArray[hop].to.index;
+			}
+		}
+
+		@Override
+		int indexOf(Object value) {
+			Integer index = indexes.get(value);
+			return index == null ? -1 : index;
+		}
+
+		@Override
+		V valueOf(int index) {
+			return values[index];
+		}
 
-	private PathInfo<V, E> getPathInfo(V v1, V v2, Map<V, Map<V, PathInfo<V, E>>> paths) {
-		Map<V, PathInfo<V, E>> map = paths.get(v1);
-		if (map == null || map.get(v2) == null) return null;
-		return map.get(v2);
+		@Override
+		int targetOf(int hop) {
+			return targets[hop];
+		}
+
+		@Override
+		EdgeInfo<V, E> edgeInfo(int hop) {
+			return edgeArray[hop].edgeInfo();
+		}
 	}
 	
 }
@@ -1,6 +1,8 @@
 package com.zbowen.graph;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -110,6 +112,22 @@ public class ListGraph2<V, E> extends Graph<V, E> {
 		
 	}
 	
+	@Override
+	Collection<V> vertexValues() {
+		return vertices.keySet();
+	}
+	
+	@Override
+	Collection<V> successors(V v) {
+		Vertex<V, E> vertex = vertices.get(v);
+		if (vertex == null) return null;
+		List<V> list = new ArrayList<>(vertex.outEdges.size());
+		for (Edge<V, E> edge : vertex.outEdges) {
+			list.add(edge.to.value);
+		}
+		return list;
+	}
+	
 	//顶点类
 	private static class Vertex<V, E> {
 		V value;
@@ -411,9 +429,14 @@ public class ListGraph2<V, E> extends Graph<V, E> {
 	}
 
 
+	/**
+	 * 按照 shortestPathStrategy 选择算法 DELTA_STEPPING 没有并行版本 使用 dijkstra
+	 */
 	@Override
 	public Map<V, PathInfo<V, E>> shortestPath(V begin) {
-		return bellmanFord(begin);
+		if (shortestPathStrategy == ShortestPathStrategy.BELLMAN_FORD) return bellmanFord(begin);
+		if (shortestPathStrategy == ShortestPathStrategy.SPFA) return spfa(begin);
+		return dijkstra(begin);
 	}
 	
 	private Map<V, PathInfo<V, E>> bellmanFord(V begin){
@@ -426,16 +449,57 @@ public class ListGraph2<V, E> extends Graph<V, E> {
 		Map<V, PathInfo<V, E>> selectedPaths = new HashMap<>();
 		//先将 源点 添加到 selectedPaths 集合中 并设置其路径权值为 zero 代表以源点 为起点直接发出的边都是可以松弛的
 		selectedPaths.put(begin, new PathInfo<>(weightManager.zero()));
-		//对 所有边 进行 V - 1 次松弛 操作 V代表顶点数量
+		//对 所有边 进行 V - 1 次松弛 操作 V代表顶点数量 某一轮没有任何松弛 就提前结束
 		int times = verticesSize() - 1;
-		for (int i = 0; i < times; i++) {
+		for (int i = 0; ; i++) {
+			boolean relaxed = false;
 			//遍历 所有的边 
-			edges.forEach((Edge<V, E> edge) -> {
+			for (Edge<V, E> edge : edges) {
 				//如果 edge 的起点都没有 松弛 那么 由edge.from 指向 edge.to的这条边肯定松弛不了 就跳过
-				if (!selectedPaths.containsKey(edge.from.value)) return; //continue;
+				if (!selectedPaths.containsKey(edge.from.value)) continue;
 				//松弛
-				relaxForbellmanFord(edge, selectedPaths);
-			});
+				if (!relaxForbellmanFord(edge, selectedPaths)) continue;
+				relaxed = true;
+				//第 V 轮 仍能松弛 说明存在负权环 继续松弛 直到路径的最后一条边 成环
+				if (i >= times) negativeCycleCheck(edge.to.value, selectedPaths);
+			}
+			if (!relaxed) break;
+		}
+		//最后 记得 把源点 从 selectedPaths中移除
+		selectedPaths.remove(begin);
+		return selectedPaths;
+	}
+	
+	/**
+	 * SPFA 队列优化的 bellmanFord 只松弛 路径变短了的顶点 的 outEdges 队列为空时结束
+	 * 没有负权环时 每个顶点 最多入队 V - 1 次 入队次数达到 V 说明存在负权环
+	 * 之后每次入队 都沿着 父边 往回找环 父边 成环时 抛出 NegativeCycleException
+	 */
+	private Map<V, PathInfo<V, E>> spfa(V begin) {
+		//获取 源点
+		Vertex<V, E> vertex = vertices.get(begin);
+		//和 bellmanFord 一样 源点不存在 或者没有出边 就返回空
+		if (vertex == null || vertex.outEdges.size() < 1) return null;
+		Map<V, PathInfo<V, E>> selectedPaths = new HashMap<>();
+		selectedPaths.put(begin, new PathInfo<>(weightManager.zero()));
+		//每个顶点 的入队次数
+		Map<Vertex<V, E>, Integer> counts = new HashMap<>();
+		//正在队列中的顶点 已经在队列中的顶点 不需要重复入队
+		Set<Vertex<V, E>> inQueue = new HashSet<>();
+		Queue<Vertex<V, E>> queue = new ArrayDeque<>();
+		queue.offer(vertex);
+		inQueue.add(vertex);
+		int size = verticesSize();
+		while (!queue.isEmpty()) {
+			Vertex<V, E> poll = queue.poll();
+			inQueue.remove(poll);
+			//只有 路径变短了的顶点 的出边 才可能松弛成功
+			for (Edge<V, E> edge : poll.outEdges) {
+				if (!relaxForbellmanFord(edge, selectedPaths)) continue;
+				if (!inQueue.add(edge.to)) continue;
+				if (counts.merge(edge.to, 1, Integer::sum) >= size) negativeCycleCheck(edge.to.value, selectedPaths);
+				queue.offer(edge.to);
+			}
 		}
 		//最后 记得 把源点 从 selectedPaths中移除
 		selectedPaths.remove(begin);
@@ -446,8 +510,9 @@ public class ListGraph2<V, E> extends Graph<V, E> {
 	 * 
 	 * @param edge 被松弛的边
 	 * @param selectedPaths //已经松弛了的边
+	 * @return 是否松弛成功
 	 */
-	private void relaxForbellmanFord(Edge<V, E> edge, Map<V, PathInfo<V, E>> selectedPaths) {
+	private boolean relaxForbellmanFord(Edge<V, E> edge, Map<V, PathInfo<V, E>> selectedPaths) {
 		//先 从selectedPaths 获取 edge.to 的路径信息
 		PathInfo<V, E> oldPath = selectedPaths.get(edge.to.value);
 		//先获得起点 的 路径信息
@@ -455,7 +520,7 @@ public class ListGraph2<V, E> extends Graph<V, E> {
 		//获取新路径 的 权值
 		E newWeight = weightManager.add(fromPath.weight, edge.weight);
 		//如果 就路径 不等于空 且 权值小于等于 新路径的权值 就不需要松弛
-		if (oldPath != null && weightManager.compare(oldPath.weight, newWeight) <= 0) return;
+		if (oldPath != null && weightManager.compare(oldPath.weight, newWeight) <= 0) return false;
 		if (oldPath == null) {
 			//创建 一个 没有任何信息 的新路径 并赋值给oldPath
 			oldPath = new PathInfo<>();
@@ -464,14 +529,39 @@ public class ListGraph2<V, E> extends Graph<V, E> {
 		}else {
 			//如果 旧路径不等于空 并且 新路径的权值 小于 旧路径 用新路径 覆盖 selectedPaths 中的旧路径 
 			//先清空 旧路径 信息
-			oldPath.edgeInfos.clear();
+			oldPath.getEdgeInfos().clear();
 		}
 		//设置权值
 		oldPath.weight = newWeight;
 		// 添加 edge.from 起点的路径信息
-		oldPath.edgeInfos.addAll(fromPath.edgeInfos);
+		oldPath.getEdgeInfos().addAll(fromPath.getEdgeInfos());
 		//再 添加 edge 这条边
-		oldPath.edgeInfos.add(edge.edgeInfo());
+		oldPath.getEdgeInfos().add(edge.edgeInfo());
+		return true;
+	}
+	
+	/**
+	 * 每条路径的 最后一条边 相当于 父边 从 value 沿着它往回走
+	 * 回到走过的顶点 说明 父边 成环 这个环一定是负权环 走到源点 就直接返回
+	 * @param value 刚被松弛的顶点
+	 * @param selectedPaths 已经松弛了的边
+	 */
+	private void negativeCycleCheck(V value, Map<V, PathInfo<V, E>> selectedPaths) {
+		Set<V> visited = new HashSet<>();
+		while (visited.add(value)) {
+			List<EdgeInfo<V, E>> edgeInfos = selectedPaths.get(value).getEdgeInfos();
+			if (edgeInfos.isEmpty()) return;
+			value = edgeInfos.get(edgeInfos.size() - 1).getFrom();
+		}
+		LinkedList<EdgeInfo<V, E>> cycle = new LinkedList<>();
+		V current = value;
+		do {
+			List<EdgeInfo<V, E>> edgeInfos = selectedPaths.get(current).getEdgeInfos();
+			EdgeInfo<V, E> parentEdge = edgeInfos.get(edgeInfos.size() - 1);
+			cycle.addFirst(parentEdge);
+			current = parentEdge.getFrom();
+		} while (!Objects.equals(current, value));
+		throw new NegativeCycleException(cycle);
 	}
 
 
@@ -545,7 +635,7 @@ public class ListGraph2<V, E> extends Graph<V, E> {
 		//设置权值
 		oldPath.weight = newWeight;
 		//先将 “被拉起” 顶点 的路径 添加 到路径信息中 因为 edge.to 是因为 edge.from顶点被拉起才可能被拉起的
-		oldPath.getEdgeInfos().addAll(minPath.edgeInfos);
+		oldPath.getEdgeInfos().addAll(minPath.getEdgeInfos());
 		//再 添加 edge 这条边
 		oldPath.getEdgeInfos().add(edge.edgeInfo());
 	}
@@ -4,26 +4,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import com.zbowen.graph.Graph.DoubleWeightManager;
 import com.zbowen.graph.Graph.EdgeInfo;
 import com.zbowen.graph.Graph.PathInfo;
 import com.zbowen.graph.Graph.WeightManager;
 
 public class Main {
 
-	static WeightManager<Double> weightManager = new WeightManager<Double>() {
-		public int compare(Double w1, Double w2) {
-			return w1.compareTo(w2);
-		}
-
-		public Double add(Double w1, Double w2) {
-			return w1 + w2;
-		}
-
-		@Override
-		public Double zero() {
-			return 0.0;
-		}
-	};
+	static WeightManager<Double> weightManager = new DoubleWeightManager();
 	
 	/**
 	 * 有向图
@@ -89,7 +77,7 @@ public class Main {
 		map.forEach((Object from, Map<Object, PathInfo<Object, Double>> toMap) -> {
 			System.out.println("from：" + from + "------------------------");
 			toMap.forEach((Object to, PathInfo<Object, Double> path) -> {
-				System.out.println("to：" + to + "\tWeight：" + path.weight + "\t" + path.edgeInfos);
+				System.out.println("to：" + to + "\tWeight：" + path.getWeight() + "\t" + path.getEdgeInfos());
 			});
 		});
 	}
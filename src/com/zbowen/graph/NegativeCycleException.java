@@ -0,0 +1,29 @@
+package com.zbowen.graph;
+
+import java.util.List;
+
+import com.zbowen.graph.Graph.EdgeInfo;
+
+/**
+ * 图中存在 负权环 时 最短路径算法抛出 并带上找到的负权环
+ * @author zbowen
+ *
+ */
+public class NegativeCycleException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	//按照顺序排列的边 最后一条边的终点 为 第一条边的起点
+	private final List<? extends EdgeInfo<?, ?>> cycle;
+
+	public NegativeCycleException(List<? extends EdgeInfo<?, ?>> cycle) {
+		super("图中存在负权环，无法计算最短路径！");
+		this.cycle = cycle;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <V, E> List<EdgeInfo<V, E>> getCycle() {
+		return (List<EdgeInfo<V, E>>) cycle;
+	}
+
+}
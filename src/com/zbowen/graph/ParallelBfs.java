@@ -0,0 +1,136 @@
+package com.zbowen.graph;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+
+/**
+ * CSR 数组上的 按层同步 并行广度优先遍历 (direction-optimizing)
+ * 每一层在两种方向之间选择:
+ * 1.自顶向下 并行遍历 当前层顶点的 出边 用 CAS 抢占没有访问过的顶点
+ * 2.自底向上 并行遍历 所有没有访问过的顶点的 入边 只要有一个起点在当前层 就加入下一层
+ * 当前层的出边数量 超过 未访问顶点的出边数量 / ALPHA 时 改为自底向上
+ * 当前层的顶点数量 少于 顶点数量 / BETA 时 改回自顶向下
+ * visitor 只在调用者的线程中 按层调用 返回 true 时立即结束
+ * 一层的顶点 在整层展开之后才交给 visitor 所以 visitor 返回 true 之前 这一层已经全部展开
+ * 只需要找到少数顶点 就结束的遍历 使用 bfs 更合适
+ * @author zbowen
+ *
+ */
+final class ParallelBfs {
+
+	private static final int ALPHA = 14;
+	private static final int BETA = 24;
+	//一个任务 最少处理的数量
+	static final int THRESHOLD = 256;
+
+	private ParallelBfs() {}
+
+	static void run(int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inSources, int source,
+			IntPredicate visitor, ForkJoinPool pool) {
+		int size = outOffsets.length - 1;
+		ConcurrentBitSet visited = new ConcurrentBitSet(size);
+		visited.set(source);
+		if (visitor.test(source)) return;
+		long unexploredEdges = outOffsets[size] - outDegree(outOffsets, source); //没有访问过的顶点的出边数量
+		int[] frontier = {source};
+		boolean bottomUp = false;
+		while (frontier.length > 0) {
+			long frontierEdges = 0;
+			for (int vertex : frontier) {
+				frontierEdges += outDegree(outOffsets, vertex);
+			}
+			if (!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+				bottomUp = true;
+			} else if (bottomUp && frontier.length < size / BETA) {
+				bottomUp = false;
+			}
+
+			int[] current = frontier;
+			Step step;
+			int count;
+			if (bottomUp) {
+				ConcurrentBitSet inFrontier = new ConcurrentBitSet(size);
+				for (int vertex : current) {
+					inFrontier.set(vertex);
+				}
+				//每个顶点 只由一个任务处理 不需要 CAS 抢占
+				step = (int to, IntList next) -> {
+					if (visited.get(to)) return;
+					for (int edge = inOffsets[to]; edge < inOffsets[to + 1]; edge++) {
+						if (!inFrontier.get(inSources[edge])) continue;
+						visited.set(to);
+						next.add(to);
+						return;
+					}
+				};
+				count = size;
+			} else {
+				step = (int position, IntList next) -> {
+					int from = current[position];
+					for (int edge = outOffsets[from]; edge < outOffsets[from + 1]; edge++) {
+						int to = outTargets[edge];
+						if (visited.set(to)) next.add(to);
+					}
+				};
+				count = current.length;
+			}
+			StepTask task = new StepTask(step, 0, count);
+			//超过 THRESHOLD 时 compute() 会 fork 任务 总是交给 pool 执行 pool 只有一个线程时 就是顺序执行
+			frontier = count <= THRESHOLD ? task.compute() : pool.invoke(task);
+
+			for (int vertex : frontier) {
+				unexploredEdges -= outDegree(outOffsets, vertex);
+				if (visitor.test(vertex)) return;
+			}
+		}
+	}
+
+	private static int outDegree(int[] outOffsets, int vertex) {
+		return outOffsets[vertex + 1] - outOffsets[vertex];
+	}
+
+	interface Step {
+		/**
+		 * 处理第 i 个 顶点 / 位置 把加入下一层的顶点 放进 next
+		 */
+		void run(int i, IntList next);
+	}
+
+	/**
+	 * 把 [begin, end) 二分 返回下一层的顶点
+	 */
+	static class StepTask extends RecursiveTask<int[]> {
+		private static final long serialVersionUID = 1L;
+		private final Step step;
+		private final int begin;
+		private final int end;
+
+		StepTask(Step step, int begin, int end) {
+			this.step = step;
+			this.begin = begin;
+			this.end = end;
+		}
+
+		@Override
+		protected int[] compute() {
+			if (end - begin <= THRESHOLD) {
+				IntList next = new IntList();
+				for (int i = begin; i < end; i++) {
+					step.run(i, next);
+				}
+				return next.toArray();
+			}
+			int mid = (begin + end) >>> 1;
+			StepTask left = new StepTask(step, begin, mid);
+			left.fork();
+			int[] right = new StepTask(step, mid, end).compute();
+			int[] next = left.join();
+			int[] result = Arrays.copyOf(next, next.length + right.length);
+			System.arraycopy(right, 0, result, next.length, right.length);
+			return result;
+		}
+	}
+
+}
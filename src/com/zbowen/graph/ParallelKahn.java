@@ -0,0 +1,55 @@
+package com.zbowen.graph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+/**
+ * 按层 并行 Kahn 拓扑排序
+ * 第一层为 入度为0 的顶点 之后每一层 为 上一层的出边 把入度减到0 的顶点
+ * 入度存放在 AtomicIntegerArray 中 一层的出边 交给 ForkJoinPool 并行地减少入度 减到0 的那个线程 把顶点加入下一层
+ * 每一层的大小 就是这一波可以同时处理的顶点数量
+ * @author zbowen
+ *
+ */
+final class ParallelKahn {
+
+	private ParallelKahn() {}
+
+	interface Successors {
+		/**
+		 * 对 vertex 每一条出边指向的顶点 调用 action 会被多个线程同时调用
+		 */
+		void forEach(int vertex, IntConsumer action);
+	}
+
+	/**
+	 * @param degrees 每个顶点的入度 不会被修改
+	 * @return 每一层的顶点 存在环时 环上以及环之后的顶点 不在任何一层中
+	 */
+	static List<int[]> run(int[] degrees, Successors successors, ForkJoinPool pool) {
+		int size = degrees.length;
+		AtomicIntegerArray ins = new AtomicIntegerArray(degrees);
+		IntList first = new IntList();
+		for (int i = 0; i < size; i++) {
+			if (degrees[i] == 0) first.add(i);
+		}
+		List<int[]> layers = new ArrayList<>();
+		int[] layer = first.toArray();
+		while (layer.length > 0) {
+			layers.add(layer);
+			int[] current = layer;
+			ParallelBfs.Step step = (int position, IntList next) -> {
+				successors.forEach(current[position], (int to) -> {
+					if (ins.decrementAndGet(to) == 0) next.add(to);
+				});
+			};
+			ParallelBfs.StepTask task = new ParallelBfs.StepTask(step, 0, current.length);
+			layer = current.length <= ParallelBfs.THRESHOLD ? task.compute() : pool.invoke(task);
+		}
+		return layers;
+	}
+
+}
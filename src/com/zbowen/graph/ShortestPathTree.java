@@ -0,0 +1,170 @@
+package com.zbowen.graph;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.zbowen.graph.Graph.EdgeInfo;
+import com.zbowen.graph.Graph.PathInfo;
+
+/**
+ * 单源最短路径的结果 只保存 每个顶点的 距离 以及 父顶点(前驱)
+ * 作为 Map<V, PathInfo<V, E>> 使用时 PathInfo 在取出时才创建
+ * 路径信息 edgeInfos 在调用 getEdgeInfos() 时才沿着父顶点还原
+ * 和之前一样 Map 中不包含源点 只包含从源点能到达的顶点
+ * @author zbowen
+ *
+ * @param <V> 顶点的值
+ * @param <E> 边的权值
+ */
+public abstract class ShortestPathTree<V, E> extends AbstractMap<V, PathInfo<V, E>> {
+
+	final int source; //源点的 index
+	private int size = -1; //能到达的顶点数量(不包含源点) 第一次调用 size() 时计算
+	private Set<Entry<V, PathInfo<V, E>>> entrySet;
+
+	ShortestPathTree(int source) {
+		this.source = source;
+	}
+
+	/**
+	 * 顶点的数量 index 的范围为 [0, verticesSize())
+	 */
+	abstract int verticesSize();
+
+	/**
+	 * 顶点的 index 不存在返回 -1
+	 */
+	abstract int indexOf(Object value);
+
+	abstract V valueOf(int index);
+
+	/**
+	 * 源点是否能到达 index 顶点 (index 不为源点)
+	 */
+	abstract boolean reached(int index);
+
+	/**
+	 * 源点到 index 顶点的 最短路径权值
+	 */
+	abstract E weightOf(int index);
+
+	/**
+	 * index 顶点的 父顶点 没有返回 -1
+	 */
+	abstract int parentOf(int index);
+
+	/**
+	 * 父顶点 -> index 顶点 的这条边
+	 */
+	abstract EdgeInfo<V, E> parentEdgeInfo(int index);
+
+	/**
+	 * 沿着 父顶点 从 index 往回走 还原路径
+	 */
+	List<EdgeInfo<V, E>> edgeInfos(int index) {
+		LinkedList<EdgeInfo<V, E>> edgeInfos = new LinkedList<>();
+		//存在负权环时 父顶点可能成环 最多走 顶点数量 步
+		int size = verticesSize();
+		for (int vertex = index; vertex != source && vertex >= 0 && edgeInfos.size() < size; vertex = parentOf(vertex)) {
+			edgeInfos.addFirst(parentEdgeInfo(vertex));
+		}
+		return edgeInfos;
+	}
+
+	private boolean contains(int index) {
+		return index >= 0 && index != source && reached(index);
+	}
+
+	@Override
+	public PathInfo<V, E> get(Object key) {
+		int index = indexOf(key);
+		return contains(index) ? new TreePathInfo(index) : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return contains(indexOf(key));
+	}
+
+	@Override
+	public int size() {
+		if (size < 0) {
+			int count = 0;
+			int verticesSize = verticesSize();
+			for (int i = 0; i < verticesSize; i++) {
+				if (contains(i)) count++;
+			}
+			size = count;
+		}
+		return size;
+	}
+
+	@Override
+	public Set<Entry<V, PathInfo<V, E>>> entrySet() {
+		if (entrySet == null) {
+			entrySet = new AbstractSet<Entry<V, PathInfo<V, E>>>() {
+				@Override
+				public Iterator<Entry<V, PathInfo<V, E>>> iterator() {
+					return new EntryIterator();
+				}
+
+				@Override
+				public int size() {
+					return ShortestPathTree.this.size();
+				}
+			};
+		}
+		return entrySet;
+	}
+
+	private class EntryIterator implements Iterator<Entry<V, PathInfo<V, E>>> {
+		private int next = nextIndex(0);
+
+		private int nextIndex(int index) {
+			int verticesSize = verticesSize();
+			while (index < verticesSize && !contains(index)) {
+				index++;
+			}
+			return index;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < verticesSize();
+		}
+
+		@Override
+		public Entry<V, PathInfo<V, E>> next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			int index = next;
+			next = nextIndex(index + 1);
+			return new SimpleImmutableEntry<>(valueOf(index), new TreePathInfo(index));
+		}
+	}
+
+	/**
+	 * 路径信息 edgeInfos 在第一次获取时才还原
+	 */
+	private class TreePathInfo extends PathInfo<V, E> {
+		private final int index;
+
+		TreePathInfo(int index) {
+			super(weightOf(index), null);
+			this.index = index;
+		}
+
+		@Override
+		public List<EdgeInfo<V, E>> getEdgeInfos() {
+			if (super.getEdgeInfos() == null) {
+				setEdgeInfos(edgeInfos(index));
+			}
+			return super.getEdgeInfos();
+		}
+	}
+
+}
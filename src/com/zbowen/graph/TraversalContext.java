@@ -0,0 +1,44 @@
+package com.zbowen.graph;
+
+import java.util.BitSet;
+
+/**
+ * 遍历 / 拓扑排序 使用的临时数组 每个线程一份 重复使用 避免每次遍历都创建 HashSet / 栈 / 队列
+ * 顶点使用 index 表示 用法:
+ * TraversalContext context = TraversalContext.acquire(size);
+ * try { ... } finally { context.release(); }
+ * @author zbowen
+ *
+ */
+final class TraversalContext {
+
+	private static final ThreadLocal<TraversalContext> CONTEXT = ThreadLocal.withInitial(TraversalContext::new);
+
+	final BitSet visited = new BitSet(); //已经访问过的顶点
+	int[] vertices = new int[16]; //队列 或者 栈
+	int[] counts = new int[16]; //入度 或者 下一条要访问的边
+	private boolean inUse;
+
+	private TraversalContext() {}
+
+	/**
+	 * 获取当前线程的上下文 visited 已经清空 数组的长度不小于 size 但内容没有清空
+	 */
+	static TraversalContext acquire(int size) {
+		TraversalContext context = CONTEXT.get();
+		//visitor 中 又在同一个线程里开始了遍历 这次使用新的上下文
+		if (context.inUse) context = new TraversalContext();
+		context.inUse = true;
+		context.visited.clear();
+		if (context.vertices.length < size) {
+			context.vertices = new int[size];
+			context.counts = new int[size];
+		}
+		return context;
+	}
+
+	void release() {
+		inUse = false;
+	}
+
+}
@@ -0,0 +1,58 @@
+package com.zbowen.graph;
+
+/**
+ * 元素为 [0, size) 的并查集 基于rank的优化 + 路径分裂 Path Spliting
+ * 和 GenericUnionFind 相同 只是用数组代替 Map 和 Node
+ * @author zbowen
+ *
+ */
+public class UnionFind {
+
+	private final int[] parents;
+	private final int[] ranks;
+
+	public UnionFind(int size) {
+		parents = new int[size];
+		ranks = new int[size];
+		for (int i = 0; i < size; i++) {
+			parents[i] = i;
+			ranks[i] = 1;
+		}
+	}
+
+	/**
+	 * 路径分裂 Path Spliting
+	 */
+	public int find(int v) {
+		while (parents[v] != v) {
+			int parent = parents[v];
+			parents[v] = parents[parent];
+			v = parent;
+		}
+		return v;
+	}
+
+	/**
+	 * @return v1 v2 原本不在同一个集合 合并成功 返回 true
+	 */
+	public boolean union(int v1, int v2) {
+		int p1 = find(v1);
+		int p2 = find(v2);
+		if (p1 == p2) return false;
+		//合并 基于rank优化 把 高度 小的树 嫁接到 高度大的树上
+		if (ranks[p1] < ranks[p2]) {
+			parents[p1] = p2;
+		} else if (ranks[p1] > ranks[p2]) {
+			parents[p2] = p1;
+		} else {
+			parents[p2] = p1;
+			ranks[p1]++;
+		}
+		return true;
+	}
+
+	public boolean isSame(int v1, int v2) {
+		return find(v1) == find(v2);
+	}
+
+}